@@ -23,6 +23,8 @@ import net.minecraft.client.resource.language.I18n;
 import net.minecraft.client.util.InputUtil;
 import net.wurstclient.altmanager.AltManager;
 import net.wurstclient.altmanager.Encryption;
+import net.wurstclient.chunk.ChunkChangeTracker;
+import net.wurstclient.chunk.ChunkScanService;
 import net.wurstclient.clickgui.ClickGui;
 import net.wurstclient.command.CmdList;
 import net.wurstclient.command.CmdProcessor;
@@ -70,6 +72,8 @@ public enum WurstClient
 	private CmdProcessor cmdProcessor;
 	private IngameHUD hud;
 	private RotationFaker rotationFaker;
+	private ChunkChangeTracker chunkChangeTracker;
+	private ChunkScanService chunkScanService;
 	private FriendsList friends;
 	
 	private boolean enabled = true;
@@ -129,6 +133,12 @@ public enum WurstClient
 		eventManager.add(PreMotionListener.class, rotationFaker);
 		eventManager.add(PostMotionListener.class, rotationFaker);
 		
+		chunkChangeTracker = new ChunkChangeTracker();
+		eventManager.add(UpdateListener.class, chunkChangeTracker);
+		
+		chunkScanService = new ChunkScanService(eventManager,
+			wurstFolder.resolve("cache"));
+		
 		problematicPackDetector = new ProblematicResourcePackDetector();
 		problematicPackDetector.start();
 		
@@ -277,6 +287,16 @@ public enum WurstClient
 		return rotationFaker;
 	}
 	
+	public ChunkChangeTracker getChunkChangeTracker()
+	{
+		return chunkChangeTracker;
+	}
+	
+	public ChunkScanService getChunkScanService()
+	{
+		return chunkScanService;
+	}
+	
 	public FriendsList getFriends()
 	{
 		return friends;
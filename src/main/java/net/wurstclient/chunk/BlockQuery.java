@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.wurstclient.settings.ChunkAreaSetting;
+
+/**
+ * A set of blocks that a hack wants {@link ChunkScanService} to find for it.
+ * All queries that are registered at the same time share one pass over each
+ * chunk.
+ *
+ * <p>
+ * The filters are called from the scanning threads, so they must be
+ * thread-safe. The position filter should read blocks from the
+ * {@link BlockView} it is given, which is usually a {@link ChunkSnapshot},
+ * and not from the live world. That snapshot only reaches one block past
+ * the edges of the chunk. The {@link BlockPos} passed to it is mutable
+ * and must not be stored. Apart from the Y bounds, which are read by the
+ * scanning threads too, everything else in this class should only be used
+ * from the client thread.
+ */
+public final class BlockQuery
+{
+	private static final BiPredicate<BlockView, BlockPos> ANY_POS =
+		(world, pos) -> true;
+	
+	private final ChunkAreaSetting area;
+	private final Predicate<BlockState> stateFilter;
+	private final BiPredicate<BlockView, BlockPos> posFilter;
+	
+	private final HashMap<ChunkPos, LongList> results = new HashMap<>();
+	private final HashMap<ChunkPos, ChunkSearcher> pending = new HashMap<>();
+	private int completedRing = -1;
+	private int revision;
+	private String baseCacheKey;
+	private String cacheKey;
+	
+	private volatile int minY = Integer.MIN_VALUE;
+	private volatile int maxY = Integer.MAX_VALUE;
+	private volatile boolean surfaceLimited;
+	private String boundsKey = "";
+	
+	/**
+	 * @param stateFilter
+	 *            decides which blocks match, looking only at their state. It
+	 *            must not depend on anything else, since it is also used to
+	 *            skip whole chunk sections based on their palette.
+	 */
+	public BlockQuery(ChunkAreaSetting area, Predicate<BlockState> stateFilter)
+	{
+		this(area, stateFilter, ANY_POS);
+	}
+	
+	/**
+	 * @param stateFilter
+	 *            decides which blocks match, looking only at their state
+	 * @param posFilter
+	 *            an additional check for blocks that passed the state
+	 *            filter, e.g. to look at their direct neighbors
+	 */
+	public BlockQuery(ChunkAreaSetting area, Predicate<BlockState> stateFilter,
+		BiPredicate<BlockView, BlockPos> posFilter)
+	{
+		this.area = area;
+		this.stateFilter = stateFilter;
+		this.posFilter = posFilter;
+	}
+	
+	Predicate<BlockState> getStateFilter()
+	{
+		return stateFilter;
+	}
+	
+	/**
+	 * Whether this query has a position filter, which might look at the
+	 * blocks around the chunk and needs those to be copied too.
+	 */
+	boolean hasPosFilter()
+	{
+		return posFilter != ANY_POS;
+	}
+	
+	boolean matchesPos(BlockView world, BlockPos pos)
+	{
+		return posFilter.test(world, pos);
+	}
+	
+	/**
+	 * Cheap check whether a chunk section could contain any matching blocks,
+	 * looking only at its palette and its Y bounds.
+	 *
+	 * @param sectionMinY
+	 *            the lowest Y coordinate in the section
+	 * @param surfaceY
+	 *            the highest non-air block in the whole chunk
+	 */
+	boolean canMatchIn(PalettedContainer<BlockState> section, int sectionMinY,
+		int surfaceY)
+	{
+		int sectionMaxY = sectionMinY + 15;
+		if(sectionMaxY < minY || sectionMinY > maxY)
+			return false;
+		
+		if(surfaceLimited && sectionMinY > surfaceY + 1)
+			return false;
+		
+		return section.hasAny(stateFilter);
+	}
+	
+	/**
+	 * @param surfaceY
+	 *            the highest non-air block in the column of the given block
+	 */
+	boolean isInBounds(int y, int surfaceY)
+	{
+		if(y < minY || y > maxY)
+			return false;
+		
+		return !surfaceLimited || y <= surfaceY + 1;
+	}
+	
+	/**
+	 * Only searches blocks between the given Y coordinates (inclusive).
+	 * Changing the bounds throws away all results.
+	 */
+	public void setYRange(int minY, int maxY)
+	{
+		if(minY == this.minY && maxY == this.maxY)
+			return;
+		
+		this.minY = minY;
+		this.maxY = maxY;
+		updateBoundsKey();
+		invalidate();
+	}
+	
+	/**
+	 * Tells the scanner that no block can match if it's more than one block
+	 * above the highest non-air block of its column, e.g. because it needs a
+	 * block below it. Everything above the
+	 * {@link Heightmap.Type#WORLD_SURFACE} heightmap is then skipped, which
+	 * is usually most of the chunk.
+	 */
+	public void limitToSurface()
+	{
+		surfaceLimited = true;
+		updateBoundsKey();
+		invalidate();
+	}
+	
+	private void updateBoundsKey()
+	{
+		boundsKey = "";
+		if(minY != Integer.MIN_VALUE || maxY != Integer.MAX_VALUE)
+			boundsKey += "_y" + minY + "_" + maxY;
+		
+		if(surfaceLimited)
+			boundsKey += "_surface";
+		
+		updateCacheKey();
+	}
+	
+	private void updateCacheKey()
+	{
+		cacheKey = baseCacheKey == null ? null : baseCacheKey + boundsKey;
+	}
+	
+	/**
+	 * Throws away all results, e.g. because the filters have changed. The
+	 * area will be searched again on the next tick.
+	 */
+	public void invalidate()
+	{
+		if(!results.isEmpty())
+			revision++;
+		
+		results.clear();
+		pending.clear();
+		completedRing = -1;
+	}
+	
+	void forget(ChunkPos pos)
+	{
+		if(results.remove(pos) != null)
+			revision++;
+		
+		pending.remove(pos);
+	}
+	
+	void forgetOutOfRange()
+	{
+		if(results.keySet().removeIf(pos -> !area.isInRange(pos)))
+			revision++;
+		
+		pending.keySet().removeIf(pos -> !area.isInRange(pos));
+	}
+	
+	/**
+	 * Checks the given positions in an already searched chunk again, without
+	 * searching the rest of the chunk. Chunks that are still being searched
+	 * are searched again from scratch, since the searcher might have seen
+	 * the old blocks.
+	 *
+	 * @param positions
+	 *            packed positions that all lie in the given chunk
+	 */
+	void recheck(ChunkPos chunkPos, LongSet positions, World world)
+	{
+		if(pending.containsKey(chunkPos))
+		{
+			forget(chunkPos);
+			return;
+		}
+		
+		LongList oldResult = results.get(chunkPos);
+		if(oldResult == null)
+			return;
+		
+		LongArrayList newResult = new LongArrayList(oldResult.size());
+		LongOpenHashSet removed = new LongOpenHashSet();
+		for(LongIterator itr = oldResult.iterator(); itr.hasNext();)
+		{
+			long block = itr.nextLong();
+			if(positions.contains(block))
+				removed.add(block);
+			else
+				newResult.add(block);
+		}
+		
+		boolean changed = false;
+		int added = 0;
+		BlockPos.Mutable pos = new BlockPos.Mutable();
+		for(LongIterator itr = positions.iterator(); itr.hasNext();)
+		{
+			pos.set(itr.nextLong());
+			int surfaceY = world.getTopY(Heightmap.Type.WORLD_SURFACE,
+				pos.getX(), pos.getZ()) - 1;
+			if(!isInBounds(pos.getY(), surfaceY)
+				|| !stateFilter.test(world.getBlockState(pos))
+				|| !posFilter.test(world, pos))
+				continue;
+			
+			newResult.add(pos.asLong());
+			added++;
+			if(!removed.contains(pos.asLong()))
+				changed = true;
+		}
+		
+		// don't bother the hacks if none of their blocks were affected
+		if(!changed && added == removed.size())
+			return;
+		
+		results.put(chunkPos, newResult);
+		revision++;
+	}
+	
+	boolean needs(ChunkPos pos)
+	{
+		return !results.containsKey(pos) && !pending.containsKey(pos);
+	}
+	
+	boolean isWaitingFor(ChunkSearcher searcher)
+	{
+		return pending.get(searcher.getPos()) == searcher;
+	}
+	
+	void setPending(ChunkSearcher searcher)
+	{
+		pending.put(searcher.getPos(), searcher);
+	}
+	
+	boolean hasResult(ChunkPos pos)
+	{
+		return results.containsKey(pos);
+	}
+	
+	/**
+	 * @param completedRing
+	 *            how many rings of chunks around the player have been fully
+	 *            searched, or {@link Integer#MAX_VALUE} if the whole area
+	 *            has
+	 */
+	void setCompletedRing(int completedRing)
+	{
+		this.completedRing = completedRing;
+	}
+	
+	void deliver(ChunkSearcher searcher)
+	{
+		if(!isWaitingFor(searcher))
+			return;
+		
+		pending.remove(searcher.getPos());
+		results.put(searcher.getPos(), searcher.getMatchingBlocks(this));
+		revision++;
+	}
+	
+	public ChunkAreaSetting getArea()
+	{
+		return area;
+	}
+	
+	/**
+	 * @return the name under which the results are cached on disk, or null
+	 *         if they aren't. It includes the Y bounds, so that results for
+	 *         different bounds don't get mixed up. The same object is
+	 *         returned until the key changes.
+	 */
+	public String getCacheKey()
+	{
+		return cacheKey;
+	}
+	
+	/**
+	 * Enables or disables the {@link ScanResultCache} for this query.
+	 *
+	 * @param cacheKey
+	 *            a file name that changes whenever the filters change, or
+	 *            null to disable caching
+	 */
+	public void setCacheKey(String cacheKey)
+	{
+		if(Objects.equals(cacheKey, baseCacheKey))
+			return;
+		
+		baseCacheKey = cacheKey;
+		updateCacheKey();
+	}
+	
+	/**
+	 * @return true if every chunk in the area has been searched
+	 */
+	public boolean isComplete()
+	{
+		return completedRing == Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Chunks are searched nearest-first, so results become available one
+	 * ring around the player at a time.
+	 *
+	 * @return the distance (in chunks, along either axis) from the player's
+	 *         chunk up to which every chunk has been searched, -1 if not even
+	 *         the player's own chunk has, or {@link Integer#MAX_VALUE} if
+	 *         the whole area has
+	 */
+	public int getCompletedRing()
+	{
+		return completedRing;
+	}
+	
+	/**
+	 * @return a number that changes whenever the results change
+	 */
+	public int getRevision()
+	{
+		return revision;
+	}
+	
+	/**
+	 * @return the matching blocks in the given chunk, packed with
+	 *         {@link BlockPos#asLong()}, or null if that chunk hasn't been
+	 *         searched (yet). The same list is returned until the chunk is
+	 *         searched again or any of its blocks change. It must not be
+	 *         modified.
+	 */
+	public LongList getResult(ChunkPos pos)
+	{
+		return results.get(pos);
+	}
+	
+	public Map<ChunkPos, LongList> getResults()
+	{
+		return Collections.unmodifiableMap(results);
+	}
+}
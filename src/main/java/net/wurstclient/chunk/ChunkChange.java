@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongLists;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * Everything that happened to one chunk during one client tick, as reported
+ * by {@link ChunkChangeTracker}.
+ */
+public final class ChunkChange
+{
+	private final ChunkPos pos;
+	private Reason reason;
+	private final IntOpenHashSet sections = new IntOpenHashSet();
+	private final LongArrayList blocks = new LongArrayList();
+	private final IntOpenHashSet lightSections = new IntOpenHashSet();
+	
+	ChunkChange(ChunkPos pos, Reason reason)
+	{
+		this.pos = pos;
+		this.reason = reason;
+	}
+	
+	void merge(Reason reason, long[] changedBlocks, int[] changedLight)
+	{
+		if(reason.compareTo(this.reason) > 0)
+			this.reason = reason;
+		
+		if(this.reason == Reason.FULL_LOAD)
+		{
+			sections.clear();
+			blocks.clear();
+			lightSections.clear();
+			return;
+		}
+		
+		for(int sectionY : changedLight)
+			lightSections.add(sectionY);
+		
+		for(long block : changedBlocks)
+		{
+			blocks.add(block);
+			sections.add(
+				ChunkSectionPos.getSectionCoord(BlockPos.unpackLongY(block)));
+		}
+	}
+	
+	public ChunkPos getPos()
+	{
+		return pos;
+	}
+	
+	/**
+	 * Returns the most far-reaching kind of change that happened to this
+	 * chunk during the tick.
+	 */
+	public Reason getReason()
+	{
+		return reason;
+	}
+	
+	public boolean isFullChunk()
+	{
+		return reason == Reason.FULL_LOAD;
+	}
+	
+	public boolean isSectionChanged(int sectionY)
+	{
+		return isFullChunk() || sections.contains(sectionY);
+	}
+	
+	/**
+	 * Returns the y-coordinates of the changed sections. Empty if the whole
+	 * chunk has changed.
+	 */
+	public IntSet getChangedSections()
+	{
+		return IntSets.unmodifiable(sections);
+	}
+	
+	/**
+	 * Returns the y-coordinates of the sections whose light levels were
+	 * updated by the server. Changed blocks can also change the light around
+	 * them, but the server usually reports that in a separate update. Empty
+	 * if the whole chunk has changed.
+	 */
+	public IntSet getChangedLightSections()
+	{
+		return IntSets.unmodifiable(lightSections);
+	}
+	
+	/**
+	 * Returns the positions of the changed blocks, packed with
+	 * {@link BlockPos#asLong()}. Empty if the whole chunk has changed.
+	 */
+	public LongList getChangedBlocks()
+	{
+		return LongLists.unmodifiable(blocks);
+	}
+	
+	/**
+	 * Ordered from least to most far-reaching.
+	 */
+	public static enum Reason
+	{
+		/**
+		 * Only light levels changed, no blocks.
+		 */
+		LIGHT,
+		SINGLE_BLOCK,
+		DELTA,
+		FULL_LOAD;
+	}
+}
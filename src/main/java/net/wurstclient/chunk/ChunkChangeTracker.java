@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.LightData;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.chunk.ChunkChange.Reason;
+import net.wurstclient.event.EventManager;
+import net.wurstclient.events.ChunkChangeSetListener;
+import net.wurstclient.events.ChunkChangeSetListener.ChunkChangeSetEvent;
+import net.wurstclient.events.UpdateListener;
+
+/**
+ * Collects chunk updates and fires them as one deduplicated
+ * {@link ChunkChangeSetEvent} per client tick, so that hacks don't have to
+ * react to every single packet.
+ *
+ * <p>
+ * Changes are recorded by ClientPlayNetworkHandlerMixin on the client thread,
+ * right after the packet has been applied to the world. Recording them when
+ * the Netty thread receives the packet would let the event fire before the
+ * world has changed, and anything reading the world in response would see
+ * the old blocks.
+ *
+ * <p>
+ * Light data is queued by the client and read while the world is being
+ * rendered, right before the light engine applies it. Light changes are
+ * recorded there, so by the next tick the new light levels are in place.
+ */
+public final class ChunkChangeTracker implements UpdateListener
+{
+	private static final long[] NO_BLOCKS = {};
+	private static final int[] NO_SECTIONS = {};
+	
+	private final ArrayList<PendingChange> pending = new ArrayList<>();
+	
+	public void afterBlockUpdate(BlockPos pos)
+	{
+		if(!EventManager.hasListeners(ChunkChangeSetListener.class))
+			return;
+		
+		pending.add(new PendingChange(new ChunkPos(pos), Reason.SINGLE_BLOCK,
+			new long[]{pos.asLong()}, NO_SECTIONS));
+	}
+	
+	public void afterChunkDeltaUpdate(ChunkDeltaUpdateS2CPacket packet)
+	{
+		if(!EventManager.hasListeners(ChunkChangeSetListener.class))
+			return;
+		
+		LongArrayList blocks = new LongArrayList();
+		packet.visitUpdates((pos, state) -> blocks.add(pos.asLong()));
+		pending.add(new PendingChange(packet.sectionPos.toChunkPos(),
+			Reason.DELTA, blocks.toLongArray(), NO_SECTIONS));
+	}
+	
+	public void afterLoadChunk(int x, int z)
+	{
+		if(!EventManager.hasListeners(ChunkChangeSetListener.class))
+			return;
+		
+		pending.add(new PendingChange(new ChunkPos(x, z), Reason.FULL_LOAD,
+			NO_BLOCKS, NO_SECTIONS));
+	}
+	
+	public void afterLightUpdate(ClientWorld world, int x, int z,
+		LightData data)
+	{
+		if(!EventManager.hasListeners(ChunkChangeSetListener.class))
+			return;
+		
+		BitSet changed = new BitSet();
+		changed.or(data.getInitedSky());
+		changed.or(data.getInitedBlock());
+		changed.or(data.getUninitedSky());
+		changed.or(data.getUninitedBlock());
+		
+		// the masks start one section below the bottom of the world
+		int offset = world.getBottomSectionCoord() - 1;
+		pending.add(new PendingChange(new ChunkPos(x, z), Reason.LIGHT,
+			NO_BLOCKS, changed.stream().map(i -> offset + i).toArray()));
+	}
+	
+	@Override
+	public void onUpdate()
+	{
+		if(pending.isEmpty())
+			return;
+		
+		LinkedHashMap<ChunkPos, ChunkChange> changes = new LinkedHashMap<>();
+		for(PendingChange p : pending)
+		{
+			ChunkChange change = changes.get(p.pos());
+			if(change == null)
+			{
+				change = new ChunkChange(p.pos(), p.reason());
+				changes.put(p.pos(), change);
+			}
+			
+			change.merge(p.reason(), p.blocks(), p.lightSections());
+		}
+		pending.clear();
+		
+		EventManager.fire(new ChunkChangeSetEvent(changes));
+	}
+	
+	private record PendingChange(ChunkPos pos, Reason reason, long[] blocks,
+		int[] lightSections)
+	{}
+}
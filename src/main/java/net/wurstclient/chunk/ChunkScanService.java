@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.dimension.DimensionType;
+import net.wurstclient.WurstClient;
+import net.wurstclient.event.EventManager;
+import net.wurstclient.events.ChunkChangeSetListener;
+import net.wurstclient.events.UpdateListener;
+import net.wurstclient.util.ChunkUtils;
+import net.wurstclient.util.MinPriorityThreadFactory;
+
+/**
+ * Runs the {@link BlockQuery}s of all active hacks. Each chunk is searched
+ * once for all queries that need it, on one shared thread pool, instead of
+ * every hack walking the world on its own.
+ *
+ * <p>
+ * Queries with a cache key also have their results cached on disk, in a
+ * separate {@link ScanResultCache} for each server and dimension.
+ */
+public final class ChunkScanService
+	implements UpdateListener, ChunkChangeSetListener
+{
+	private static final MinecraftClient MC = WurstClient.MC;
+	
+	private static final int SAVE_INTERVAL = 1200;
+	private static final int MAX_SEARCHERS =
+		Runtime.getRuntime().availableProcessors() * 2;
+	
+	private final EventManager eventManager;
+	private final Path cacheFolder;
+	private final ArrayList<BlockQuery> queries = new ArrayList<>();
+	private final ArrayList<ChunkSearcher> searchers = new ArrayList<>();
+	private final HashMap<String, ScanResultCache> caches = new HashMap<>();
+	
+	// closed caches whose final save hasn't happened yet, so that a query
+	// that comes back in the meantime continues with the same cache
+	// instead of loading files that are about to be overwritten
+	private final ConcurrentHashMap<Path, ScanResultCache> closing =
+		new ConcurrentHashMap<>();
+	
+	// kept for as long as the game runs, so that hacks can also use it for
+	// work that doesn't belong to a query
+	private final ExecutorService pool =
+		MinPriorityThreadFactory.newFixedThreadPool();
+	
+	// kept for as long as the game runs, so that all saving happens in
+	// order, even across removing and adding queries
+	private final ExecutorService ioPool =
+		MinPriorityThreadFactory.newSingleThreadExecutor();
+	
+	// the cache keys of all queries as of the last tick, to notice when
+	// caches need to be closed
+	private final ArrayList<String> cacheKeys = new ArrayList<>();
+	private DimensionType dimension;
+	private Path dimensionCacheFolder;
+	private int ticksSinceSave;
+	
+	public ChunkScanService(EventManager eventManager, Path cacheFolder)
+	{
+		this.eventManager = eventManager;
+		this.cacheFolder = cacheFolder;
+	}
+	
+	public void add(BlockQuery query)
+	{
+		if(queries.contains(query))
+			return;
+		
+		query.invalidate();
+		queries.add(query);
+		if(queries.size() > 1)
+			return;
+		
+		eventManager.add(UpdateListener.class, this);
+		eventManager.add(ChunkChangeSetListener.class, this);
+	}
+	
+	public void remove(BlockQuery query)
+	{
+		if(!queries.remove(query))
+			return;
+		
+		query.invalidate();
+		cancelUnneededSearchers();
+		closeCaches(false);
+		if(!queries.isEmpty())
+			return;
+		
+		eventManager.remove(UpdateListener.class, this);
+		eventManager.remove(ChunkChangeSetListener.class, this);
+		dimension = null;
+	}
+	
+	/**
+	 * Runs follow-up work, such as processing the results of a
+	 * {@link BlockQuery}, on the shared scanning threads. Tasks aren't
+	 * cancelled when a query is removed, that's up to whoever submitted
+	 * them.
+	 */
+	public Future<?> submit(Runnable task)
+	{
+		return pool.submit(task);
+	}
+	
+	/**
+	 * Like {@link #submit(Runnable)}, but with a result.
+	 */
+	public <T> Future<T> submit(Callable<T> task)
+	{
+		return pool.submit(task);
+	}
+	
+	@Override
+	public void onUpdate()
+	{
+		// start over in a new dimension
+		DimensionType newDimension = MC.world.getDimension();
+		if(newDimension != dimension)
+		{
+			queries.forEach(BlockQuery::invalidate);
+			cancelUnneededSearchers();
+			closeCaches(true);
+			dimension = newDimension;
+			dimensionCacheFolder = ChunkUtils.getDimensionFolder(cacheFolder);
+		}
+		
+		// drop caches whose query has been disabled or changed its filters,
+		// and save the others every now and then in case the game crashes
+		if(haveCacheKeysChanged())
+			closeCaches(false);
+		if(++ticksSinceSave >= SAVE_INTERVAL)
+		{
+			ticksSinceSave = 0;
+			caches.values().forEach(cache -> ioPool.submit(cache::save));
+		}
+		
+		// hand out finished results
+		for(Iterator<ChunkSearcher> itr = searchers.iterator(); itr.hasNext();)
+		{
+			ChunkSearcher searcher = itr.next();
+			if(searcher.getStatus() != ChunkSearcher.Status.DONE)
+				continue;
+			
+			itr.remove();
+			for(BlockQuery query : searcher.getQueries())
+				query.deliver(searcher);
+		}
+		
+		// find chunks that still need to be searched, grouping all queries
+		// that need the same chunk
+		ChunkPos center = MC.player.getChunkPos();
+		HashMap<ChunkPos, Chunk> chunks = new HashMap<>();
+		HashMap<ChunkPos, ArrayList<BlockQuery>> chunkQueries =
+			new HashMap<>();
+		for(BlockQuery query : queries)
+		{
+			query.forgetOutOfRange();
+			
+			int incompleteRing = Integer.MAX_VALUE;
+			for(Chunk chunk : query.getArea().getChunksInRange())
+			{
+				ChunkPos pos = chunk.getPos();
+				if(query.hasResult(pos))
+					continue;
+				
+				incompleteRing =
+					Math.min(incompleteRing, getRing(center, pos));
+				if(!query.needs(pos))
+					continue;
+				
+				chunks.put(pos, chunk);
+				chunkQueries.computeIfAbsent(pos, p -> new ArrayList<>())
+					.add(query);
+			}
+			
+			query.setCompletedRing(incompleteRing == Integer.MAX_VALUE
+				? Integer.MAX_VALUE : incompleteRing - 1);
+		}
+		
+		cancelUnneededSearchers();
+		
+		// Start searching them nearest-first. Only a few searchers are
+		// queued up at a time, so that chunks the player moves closer to
+		// don't have to wait behind the rest of the area.
+		ArrayList<ChunkPos> sorted = new ArrayList<>(chunkQueries.keySet());
+		sorted.sort(Comparator.<ChunkPos> comparingInt(p -> getRing(center, p))
+			.thenComparingInt(p -> ChunkUtils.getManhattanDistance(center, p)));
+		
+		for(ChunkPos pos : sorted)
+		{
+			if(searchers.size() >= MAX_SEARCHERS)
+				break;
+			
+			ArrayList<BlockQuery> needed = chunkQueries.get(pos);
+			ChunkSnapshot snapshot =
+				ChunkSnapshot.ofBlocks(MC.world, chunks.get(pos),
+					(section, minY, surfaceY) -> needed.stream().anyMatch(
+						query -> query.canMatchIn(section, minY, surfaceY)),
+					needed.stream().anyMatch(BlockQuery::hasPosFilter));
+			ChunkSearcher searcher = new ChunkSearcher(snapshot, needed,
+				needed.stream().map(this::getCache).toList(), dimension);
+			needed.forEach(query -> query.setPending(searcher));
+			searcher.startSearching(pool);
+			searchers.add(searcher);
+		}
+	}
+	
+	@Override
+	public void onChunkChangeSet(ChunkChangeSetEvent event)
+	{
+		// Newly loaded chunks are searched again from scratch. For block
+		// updates, only the changed blocks and their neighbors (which
+		// position filters may look at) are checked again.
+		HashMap<ChunkPos, LongOpenHashSet> changedBlocks = new HashMap<>();
+		for(ChunkChange change : event.getChanges())
+		{
+			if(change.isFullChunk())
+			{
+				for(BlockQuery query : queries)
+					query.forget(change.getPos());
+				continue;
+			}
+			
+			for(long block : change.getChangedBlocks())
+			{
+				addChangedBlock(changedBlocks, block);
+				for(Direction direction : Direction.values())
+					addChangedBlock(changedBlocks,
+						BlockPos.offset(block, direction));
+			}
+		}
+		
+		changedBlocks.forEach((chunkPos, blocks) -> {
+			for(BlockQuery query : queries)
+				query.recheck(chunkPos, blocks, MC.world);
+		});
+		
+		cancelUnneededSearchers();
+	}
+	
+	private void addChangedBlock(HashMap<ChunkPos, LongOpenHashSet> map,
+		long block)
+	{
+		ChunkPos chunkPos = new ChunkPos(
+			ChunkSectionPos.getSectionCoord(BlockPos.unpackLongX(block)),
+			ChunkSectionPos.getSectionCoord(BlockPos.unpackLongZ(block)));
+		map.computeIfAbsent(chunkPos, p -> new LongOpenHashSet()).add(block);
+	}
+	
+	/**
+	 * @return the distance between the two chunks along whichever axis is
+	 *         farther, i.e. which ring around the center the chunk is in
+	 */
+	private static int getRing(ChunkPos center, ChunkPos pos)
+	{
+		return Math.max(Math.abs(pos.x - center.x),
+			Math.abs(pos.z - center.z));
+	}
+	
+	private ScanResultCache getCache(BlockQuery query)
+	{
+		String key = query.getCacheKey();
+		if(key == null)
+			return null;
+		
+		// the key is already a valid file name, see setCacheKey()
+		Path folder = dimensionCacheFolder.resolve(key);
+		return caches.computeIfAbsent(key, k -> {
+			ScanResultCache cache = closing.remove(folder);
+			return cache != null ? cache : new ScanResultCache(folder);
+		});
+	}
+	
+	/**
+	 * Cheap enough to run every tick, since a query returns the same key
+	 * object until its key changes.
+	 */
+	private boolean haveCacheKeysChanged()
+	{
+		boolean changed = cacheKeys.size() != queries.size();
+		for(int i = 0; !changed && i < queries.size(); i++)
+			changed = queries.get(i).getCacheKey() != cacheKeys.get(i);
+		
+		if(!changed)
+			return false;
+		
+		cacheKeys.clear();
+		queries.forEach(query -> cacheKeys.add(query.getCacheKey()));
+		return true;
+	}
+	
+	/**
+	 * Forgets the caches that no query is using anymore, or all of them.
+	 * All saving happens on the single IO thread, so that it never competes
+	 * with searches for the scanning threads.
+	 */
+	private void closeCaches(boolean all)
+	{
+		ArrayList<ScanResultCache> closed = new ArrayList<>();
+		for(Iterator<Map.Entry<String, ScanResultCache>> itr =
+			caches.entrySet().iterator(); itr.hasNext();)
+		{
+			Map.Entry<String, ScanResultCache> entry = itr.next();
+			if(!all && queries.stream()
+				.anyMatch(query -> entry.getKey().equals(query.getCacheKey())))
+				continue;
+			
+			itr.remove();
+			closed.add(entry.getValue());
+		}
+		
+		for(ScanResultCache cache : closed)
+		{
+			closing.put(cache.getFolder(), cache);
+			ioPool.submit(() -> {
+				cache.save();
+				closing.remove(cache.getFolder(), cache);
+			});
+		}
+	}
+	
+	private void cancelUnneededSearchers()
+	{
+		for(Iterator<ChunkSearcher> itr = searchers.iterator(); itr.hasNext();)
+		{
+			ChunkSearcher searcher = itr.next();
+			if(searcher.getQueries().stream()
+				.anyMatch(query -> query.isWaitingFor(searcher)))
+				continue;
+			
+			itr.remove();
+			searcher.cancelSearching();
+		}
+	}
+}
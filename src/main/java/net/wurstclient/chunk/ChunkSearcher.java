@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.collection.PaletteStorage;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.dimension.DimensionType;
+
+/**
+ * Searches a {@link ChunkSnapshot} for the blocks of one or more
+ * {@link BlockQuery}s, looking at each block only once.
+ *
+ * <p>
+ * Sections whose palette can't contain any wanted block, or that lie outside
+ * of a query's Y bounds, are skipped entirely. In the remaining sections,
+ * the state filters are only evaluated once per palette entry instead of
+ * once per block.
+ *
+ * <p>
+ * Queries that have a {@link ScanResultCache} reuse the cached results of
+ * this chunk if the sections they look at haven't changed. Only the chunk
+ * itself is hashed, so a position filter that looks into neighboring chunks
+ * might occasionally get outdated results at chunk borders.
+ *
+ * <p>
+ * Cancelling doesn't block or need any extra threads. The worker notices
+ * the cancellation and releases its results by itself.
+ */
+public final class ChunkSearcher
+{
+	private static final int MAX_QUERIES = Integer.SIZE - 1;
+	private static final int UNKNOWN = -1;
+	
+	private final ChunkSnapshot snapshot;
+	private final List<BlockQuery> queries;
+	private final List<ScanResultCache> caches;
+	private final DimensionType dimension;
+	private final ArrayList<LongArrayList> matchingBlocks;
+	private final AtomicReference<Status> status =
+		new AtomicReference<>(Status.IDLE);
+	private volatile Future<?> future;
+	
+	/**
+	 * @param caches
+	 *            the {@link ScanResultCache} of each query, or null for
+	 *            queries that aren't cached
+	 */
+	public ChunkSearcher(ChunkSnapshot snapshot, List<BlockQuery> queries,
+		List<ScanResultCache> caches, DimensionType dimension)
+	{
+		this.snapshot = snapshot;
+		this.queries = List.copyOf(queries);
+		this.caches = new ArrayList<>(caches);
+		this.dimension = dimension;
+		
+		if(queries.size() > MAX_QUERIES)
+			throw new IllegalArgumentException(
+				"Too many queries: " + queries.size());
+		
+		if(caches.size() != queries.size())
+			throw new IllegalArgumentException();
+		
+		matchingBlocks = new ArrayList<>(queries.size());
+		for(int i = 0; i < queries.size(); i++)
+			matchingBlocks.add(new LongArrayList());
+	}
+	
+	public void startSearching(ExecutorService pool)
+	{
+		if(!status.compareAndSet(Status.IDLE, Status.SEARCHING))
+			throw new IllegalStateException();
+		
+		future = pool.submit(this::searchNow);
+	}
+	
+	private void searchNow()
+	{
+		long[] hashes = new long[queries.size()];
+		int cached = loadCachedResults(hashes);
+		
+		for(int i = 0; i < snapshot.countVerticalSections(); i++)
+		{
+			if(status.get() == Status.INTERRUPTED || Thread.interrupted())
+			{
+				releaseResults();
+				return;
+			}
+			
+			PalettedContainer<BlockState> section = snapshot.getSection(i);
+			if(section != null)
+				searchSection(section, snapshot.sectionIndexToCoord(i),
+					cached);
+		}
+		
+		// must happen before DONE, since cancelling releases the results
+		for(int i = 0; i < queries.size(); i++)
+			if(caches.get(i) != null && (cached & 1 << i) == 0)
+				caches.get(i).put(snapshot.getPos(), hashes[i],
+					matchingBlocks.get(i));
+			
+		// cancelled just before finishing
+		if(!status.compareAndSet(Status.SEARCHING, Status.DONE))
+			releaseResults();
+	}
+	
+	/**
+	 * Fills in the results of all queries whose cached results are still
+	 * valid and computes the content hashes for the others.
+	 *
+	 * @return a bitmask of the queries that don't need to be searched
+	 */
+	private int loadCachedResults(long[] hashes)
+	{
+		if(caches.stream().allMatch(cache -> cache == null))
+			return 0;
+		
+		int count = snapshot.countVerticalSections();
+		long[] sectionHashes = new long[count];
+		for(int i = 0; i < count; i++)
+			sectionHashes[i] = snapshot.getSectionHash(i);
+		
+		int cached = 0;
+		for(int i = 0; i < queries.size(); i++)
+		{
+			ScanResultCache cache = caches.get(i);
+			if(cache == null)
+				continue;
+			
+			hashes[i] = getContentHash(queries.get(i), sectionHashes);
+			long[] blocks = cache.get(snapshot.getPos(), hashes[i]);
+			if(blocks == null)
+				continue;
+			
+			matchingBlocks.get(i).addElements(0, blocks);
+			cached |= 1 << i;
+		}
+		
+		return cached;
+	}
+	
+	/**
+	 * Hashes only the sections that can affect the results of the given
+	 * query, i.e. the ones containing wanted blocks and their direct
+	 * neighbors. The same sections are always copied into the snapshot, no
+	 * matter which other queries are searched along with this one.
+	 */
+	private long getContentHash(BlockQuery query, long[] sectionHashes)
+	{
+		int count = sectionHashes.length;
+		boolean[] relevant = new boolean[count];
+		int surfaceY = snapshot.getHighestSurfaceY();
+		for(int i = 0; i < count; i++)
+		{
+			PalettedContainer<BlockState> section = snapshot.getSection(i);
+			int minY = ChunkSectionPos
+				.getBlockCoord(snapshot.sectionIndexToCoord(i));
+			if(section == null || !query.canMatchIn(section, minY, surfaceY))
+				continue;
+			
+			int from = Math.max(i - 1, 0);
+			int to = Math.min(i + 1, count - 1);
+			for(int j = from; j <= to; j++)
+				relevant[j] = true;
+		}
+		
+		long hash = count;
+		for(int i = 0; i < count; i++)
+			if(relevant[i])
+				hash = hash * 31 + HashCommon.mix(i + sectionHashes[i]);
+			
+		return hash;
+	}
+	
+	private void searchSection(PalettedContainer<BlockState> section,
+		int sectionY, int cached)
+	{
+		PalettedContainer.Data<BlockState> data = section.data;
+		Palette<BlockState> palette = data.palette();
+		int minY = ChunkSectionPos.getBlockCoord(sectionY);
+		
+		// skip sections that can't contain any of the wanted blocks
+		int wanted = 0;
+		for(int i = 0; i < queries.size(); i++)
+			if((cached & 1 << i) == 0 && queries.get(i).canMatchIn(section,
+				minY, snapshot.getHighestSurfaceY()))
+				wanted |= 1 << i;
+			
+		if(wanted == 0)
+			return;
+		
+		// which queries each palette entry matches, filled in lazily. Only
+		// sections with hundreds of different blocks use the global palette
+		// (tens of thousands of entries), so instead of a table that big,
+		// ids beyond 4096 are checked directly, like in
+		// NewChunksHack.findFlowing().
+		int[] paletteMatches = new int[Math.min(palette.getSize(), 4096)];
+		Arrays.fill(paletteMatches, UNKNOWN);
+		
+		ChunkPos chunkPos = snapshot.getPos();
+		int minX = chunkPos.getStartX();
+		int minZ = chunkPos.getStartZ();
+		
+		PaletteStorage storage = data.storage();
+		BlockPos.Mutable pos = new BlockPos.Mutable();
+		
+		// palette indices are stored in YZX order
+		for(int index = 0; index < 4096; index++)
+		{
+			int id = storage.get(index);
+			int matches =
+				id < paletteMatches.length ? paletteMatches[id] : UNKNOWN;
+			
+			if(matches == UNKNOWN)
+			{
+				matches = getMatchingQueries(palette.get(id), wanted);
+				if(id < paletteMatches.length)
+					paletteMatches[id] = matches;
+			}
+			
+			if(matches == 0)
+				continue;
+			
+			pos.set(minX + (index & 15), minY + (index >> 8),
+				minZ + (index >> 4 & 15));
+			int surfaceY = snapshot.getSurfaceY(pos.getX(), pos.getZ());
+			
+			for(int i = 0; i < queries.size(); i++)
+			{
+				if((matches & 1 << i) == 0)
+					continue;
+				
+				BlockQuery query = queries.get(i);
+				if(query.isInBounds(pos.getY(), surfaceY)
+					&& query.matchesPos(snapshot, pos))
+					matchingBlocks.get(i).add(pos.asLong());
+			}
+		}
+	}
+	
+	private int getMatchingQueries(BlockState state, int wanted)
+	{
+		int matches = 0;
+		for(int i = 0; i < queries.size(); i++)
+			if((wanted & 1 << i) != 0
+				&& queries.get(i).getStateFilter().test(state))
+				matches |= 1 << i;
+			
+		return matches;
+	}
+	
+	public void cancelSearching()
+	{
+		Status oldStatus = status.getAndSet(Status.INTERRUPTED);
+		
+		// Still running, the worker will clean up after itself. Not
+		// interrupting it, since that would close any cache file it's
+		// reading at the moment.
+		if(oldStatus == Status.SEARCHING)
+		{
+			Future<?> future = this.future;
+			if(future != null)
+				future.cancel(false);
+			return;
+		}
+		
+		// already finished, so nobody else is touching the results
+		if(oldStatus == Status.DONE)
+			releaseResults();
+	}
+	
+	private void releaseResults()
+	{
+		matchingBlocks.clear();
+	}
+	
+	public ChunkPos getPos()
+	{
+		return snapshot.getPos();
+	}
+	
+	public List<BlockQuery> getQueries()
+	{
+		return queries;
+	}
+	
+	public DimensionType getDimension()
+	{
+		return dimension;
+	}
+	
+	/**
+	 * @return the blocks that matched the given query, packed with
+	 *         {@link BlockPos#asLong()}. Only valid once the status is
+	 *         {@link Status#DONE}.
+	 */
+	public LongList getMatchingBlocks(BlockQuery query)
+	{
+		if(status.get() != Status.DONE)
+			throw new IllegalStateException();
+		
+		int i = queries.indexOf(query);
+		if(i == -1)
+			throw new IllegalArgumentException();
+		
+		return matchingBlocks.get(i);
+	}
+	
+	public ChunkSearcher.Status getStatus()
+	{
+		return status.get();
+	}
+	
+	public static enum Status
+	{
+		IDLE,
+		SEARCHING,
+		INTERRUPTED,
+		DONE;
+	}
+}
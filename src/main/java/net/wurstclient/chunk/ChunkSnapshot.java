@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.LightType;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IdListPalette;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.light.ChunkLightingView;
+
+/**
+ * An immutable copy of (parts of) a {@link Chunk}, taken on the client thread
+ * so that it can be scanned on any number of other threads without racing
+ * against chunk updates.
+ *
+ * <p>
+ * Only the sections that are needed get copied. Snapshots can optionally
+ * include a one-block border from the neighboring chunks, so that filters
+ * can look at the direct neighbors of blocks at the edge of the chunk.
+ * Snapshots never read from the live world. Anything that wasn't copied
+ * reads as air, or as the default light level of its {@link LightType}.
+ *
+ * <p>
+ * Block snapshots also copy the {@link Heightmap.Type#WORLD_SURFACE}
+ * heightmap, so that scanners can skip the air above the terrain. Columns
+ * whose height wasn't copied are treated as reaching the top of the world.
+ */
+public final class ChunkSnapshot implements BlockView
+{
+	private static final BlockState AIR = Blocks.AIR.getDefaultState();
+	private static final BlockState VOID_AIR =
+		Blocks.VOID_AIR.getDefaultState();
+	
+	// local x and z of each column in the one-block border around the chunk
+	private static final int BORDER_SIZE = 18 * 18 - 16 * 16;
+	private static final int[] BORDER_X = new int[BORDER_SIZE];
+	private static final int[] BORDER_Z = new int[BORDER_SIZE];
+	static
+	{
+		for(int z = -1; z <= 16; z++)
+			for(int x = -1; x <= 16; x++)
+			{
+				int index = getBorderIndex(x, z);
+				if(index == -1)
+					continue;
+				
+				BORDER_X[index] = x;
+				BORDER_Z[index] = z;
+			}
+	}
+	
+	private final ChunkPos pos;
+	private final int bottomY;
+	private final int height;
+	private final int topY;
+	private final PalettedContainer<BlockState>[] sections;
+	private final BlockState[][] borderSections;
+	private final LightCopy blockLight;
+	private final LightCopy skyLight;
+	private final int[] surface;
+	private final int[] borderSurface;
+	private final int highestSurfaceY;
+	
+	private ChunkSnapshot(World world, Chunk chunk,
+		PalettedContainer<BlockState>[] sections,
+		BlockState[][] borderSections, int[] surface, int[] borderSurface,
+		LightCopy blockLight, LightCopy skyLight)
+	{
+		pos = chunk.getPos();
+		bottomY = chunk.getBottomY();
+		height = chunk.getHeight();
+		topY = world.getTopY();
+		this.sections = sections;
+		this.borderSections = borderSections;
+		this.surface = surface;
+		this.borderSurface = borderSurface;
+		this.blockLight = blockLight;
+		this.skyLight = skyLight;
+		
+		int highest = topY - 1;
+		if(surface != null)
+		{
+			highest = bottomY - 1;
+			for(int y : surface)
+				highest = Math.max(highest, y);
+		}
+		highestSurfaceY = highest;
+	}
+	
+	/**
+	 * Copies every section that passes the given filter, along with the
+	 * sections directly above and below it.
+	 *
+	 * <p>
+	 * Must be called on the client thread.
+	 *
+	 * @param withBorder
+	 *            whether to also copy the blocks and heights of the
+	 *            neighboring chunks that touch the copied sections
+	 */
+	@SuppressWarnings("unchecked")
+	public static ChunkSnapshot ofBlocks(World world, Chunk chunk,
+		SectionFilter sectionFilter, boolean withBorder)
+	{
+		int[] surface = new int[256];
+		int highestSurfaceY = chunk.getBottomY() - 1;
+		for(int i = 0; i < 256; i++)
+		{
+			surface[i] = chunk.sampleHeightmap(Heightmap.Type.WORLD_SURFACE,
+				i & 15, i >> 4);
+			highestSurfaceY = Math.max(highestSurfaceY, surface[i]);
+		}
+		
+		ChunkSection[] chunkSections = chunk.getSectionArray();
+		int count = chunkSections.length;
+		
+		boolean[] needed = new boolean[count];
+		for(int i = 0; i < count; i++)
+		{
+			int minY =
+				ChunkSectionPos.getBlockCoord(chunk.sectionIndexToCoord(i));
+			if(!sectionFilter.test(chunkSections[i].getBlockStateContainer(),
+				minY, highestSurfaceY))
+				continue;
+			
+			int from = Math.max(i - 1, 0);
+			int to = Math.min(i + 1, count - 1);
+			for(int j = from; j <= to; j++)
+				needed[j] = true;
+		}
+		
+		PalettedContainer<BlockState>[] sections =
+			new PalettedContainer[count];
+		for(int i = 0; i < count; i++)
+			if(needed[i])
+				sections[i] = chunkSections[i].getBlockStateContainer().copy();
+			
+		if(!withBorder)
+			return new ChunkSnapshot(world, chunk, sections, null, surface,
+				null, null, null);
+		
+		Chunk[] neighbors = getNeighbors(world, chunk.getPos());
+		BlockState[][] borderSections = new BlockState[count][];
+		for(int i = 0; i < count; i++)
+			if(needed[i])
+				borderSections[i] = copyBorderBlocks(neighbors, i);
+			
+		int[] borderSurface = new int[BORDER_SIZE];
+		for(int b = 0; b < BORDER_SIZE; b++)
+		{
+			Chunk neighbor = getNeighbor(neighbors, BORDER_X[b], BORDER_Z[b]);
+			borderSurface[b] = neighbor == null ? world.getTopY() - 1
+				: neighbor.sampleHeightmap(Heightmap.Type.WORLD_SURFACE,
+					BORDER_X[b] & 15, BORDER_Z[b] & 15);
+		}
+		
+		return new ChunkSnapshot(world, chunk, sections, borderSections,
+			surface, borderSurface, null, null);
+	}
+	
+	/**
+	 * Copies the block and sky light of the sections at the given indices,
+	 * along with the sections directly above and below them, but no blocks.
+	 *
+	 * <p>
+	 * Must be called on the client thread.
+	 *
+	 * @param withBorder
+	 *            whether to also copy the light of the neighboring chunks
+	 *            along the edges of the copied sections
+	 */
+	@SuppressWarnings("unchecked")
+	public static ChunkSnapshot ofLight(World world, Chunk chunk,
+		BitSet sectionIndices, boolean withBorder)
+	{
+		int count = chunk.countVerticalSections();
+		boolean[] needed = new boolean[count];
+		for(int i = sectionIndices.nextSetBit(0); i >= 0 && i < count; i =
+			sectionIndices.nextSetBit(i + 1))
+		{
+			int from = Math.max(i - 1, 0);
+			int to = Math.min(i + 1, count - 1);
+			for(int j = from; j <= to; j++)
+				needed[j] = true;
+		}
+		
+		LightCopy blockLight =
+			copyLight(world, chunk, needed, LightType.BLOCK, withBorder);
+		LightCopy skyLight =
+			copyLight(world, chunk, needed, LightType.SKY, withBorder);
+		
+		return new ChunkSnapshot(world, chunk, new PalettedContainer[count],
+			null, null, null, blockLight, skyLight);
+	}
+	
+	private static LightCopy copyLight(World world, Chunk chunk,
+		boolean[] needed, LightType type, boolean withBorder)
+	{
+		int count = needed.length;
+		ChunkLightingView lighting = world.getLightingProvider().get(type);
+		ChunkPos chunkPos = chunk.getPos();
+		
+		ChunkNibbleArray[] sections = new ChunkNibbleArray[count];
+		byte[][] border = withBorder ? new byte[count][] : null;
+		for(int i = 0; i < count; i++)
+		{
+			if(!needed[i])
+				continue;
+			
+			int sectionY = chunk.sectionIndexToCoord(i);
+			ChunkNibbleArray array = lighting
+				.getLightSection(ChunkSectionPos.from(chunkPos, sectionY));
+			sections[i] = array == null ? null : array.copy();
+			
+			if(withBorder)
+				border[i] = copyBorderLight(lighting, chunkPos, sectionY,
+					type);
+		}
+		
+		return new LightCopy(sections, border);
+	}
+	
+	/**
+	 * @return the index of the given column in the one-block border around
+	 *         the chunk, or -1 if it isn't part of the border
+	 */
+	private static int getBorderIndex(int localX, int localZ)
+	{
+		if(localX < -1 || localX > 16 || localZ < -1 || localZ > 16)
+			return -1;
+		
+		if(localZ == -1)
+			return localX + 1;
+		if(localZ == 16)
+			return localX + 19;
+		if(localX == -1)
+			return localZ + 36;
+		if(localX == 16)
+			return localZ + 52;
+		
+		return -1;
+	}
+	
+	/**
+	 * @return the loaded chunks around the given one in a 3x3 grid, with null
+	 *         for the ones that aren't loaded
+	 */
+	private static Chunk[] getNeighbors(World world, ChunkPos pos)
+	{
+		Chunk[] neighbors = new Chunk[9];
+		for(int dz = -1; dz <= 1; dz++)
+			for(int dx = -1; dx <= 1; dx++)
+				neighbors[(dz + 1) * 3 + dx + 1] = world.getChunk(pos.x + dx,
+					pos.z + dz, ChunkStatus.FULL, false);
+			
+		return neighbors;
+	}
+	
+	private static Chunk getNeighbor(Chunk[] neighbors, int localX,
+		int localZ)
+	{
+		return neighbors[((localZ >> 4) + 1) * 3 + (localX >> 4) + 1];
+	}
+	
+	private static BlockState[] copyBorderBlocks(Chunk[] neighbors,
+		int sectionIndex)
+	{
+		BlockState[] border = new BlockState[BORDER_SIZE * 16];
+		for(int b = 0; b < BORDER_SIZE; b++)
+		{
+			Chunk neighbor = getNeighbor(neighbors, BORDER_X[b], BORDER_Z[b]);
+			if(neighbor == null)
+				continue;
+			
+			ChunkSection section = neighbor.getSection(sectionIndex);
+			for(int y = 0; y < 16; y++)
+				border[y * BORDER_SIZE + b] = section
+					.getBlockState(BORDER_X[b] & 15, y, BORDER_Z[b] & 15);
+		}
+		
+		return border;
+	}
+	
+	private static byte[] copyBorderLight(ChunkLightingView lighting,
+		ChunkPos pos, int sectionY, LightType type)
+	{
+		ChunkNibbleArray[] neighbors = new ChunkNibbleArray[9];
+		for(int dz = -1; dz <= 1; dz++)
+			for(int dx = -1; dx <= 1; dx++)
+				neighbors[(dz + 1) * 3 + dx + 1] = lighting.getLightSection(
+					ChunkSectionPos.from(pos.x + dx, sectionY, pos.z + dz));
+			
+		byte[] border = new byte[BORDER_SIZE * 16];
+		Arrays.fill(border, (byte)type.value);
+		for(int b = 0; b < BORDER_SIZE; b++)
+		{
+			int x = BORDER_X[b];
+			int z = BORDER_Z[b];
+			ChunkNibbleArray neighbor =
+				neighbors[((z >> 4) + 1) * 3 + (x >> 4) + 1];
+			if(neighbor == null)
+				continue;
+			
+			for(int y = 0; y < 16; y++)
+				border[y * BORDER_SIZE + b] =
+					(byte)neighbor.get(x & 15, y, z & 15);
+		}
+		
+		return border;
+	}
+	
+	/**
+	 * @return the copied blocks of the section at the given index, or null
+	 *         if that section wasn't copied
+	 */
+	public PalettedContainer<BlockState> getSection(int index)
+	{
+		return sections[index];
+	}
+	
+	/**
+	 * @return a hash of the copied blocks of the section at the given index,
+	 *         or 0 if that section wasn't copied. It stays the same for as
+	 *         long as the server sends the same section.
+	 */
+	public long getSectionHash(int index)
+	{
+		PalettedContainer<BlockState> section = sections[index];
+		if(section == null)
+			return 0;
+		
+		PalettedContainer.Data<BlockState> data = section.data;
+		Palette<BlockState> palette = data.palette();
+		long hash = palette.getSize();
+		
+		// the global palette is the same for every section
+		if(!(palette instanceof IdListPalette))
+			for(int i = 0; i < palette.getSize(); i++)
+				hash = hash * 31
+					+ HashCommon.mix(Block.getRawIdFromState(palette.get(i)));
+			
+		for(long value : data.storage().getData())
+			hash = hash * 31 + HashCommon.mix(value);
+		
+		return hash;
+	}
+	
+	public ChunkPos getPos()
+	{
+		return pos;
+	}
+	
+	/**
+	 * @return the Y coordinate of the highest non-air block in the given
+	 *         column, or the top of the world if that column wasn't copied
+	 */
+	public int getSurfaceY(int x, int z)
+	{
+		int localX = x - pos.getStartX();
+		int localZ = z - pos.getStartZ();
+		if(surface != null && (localX | localZ) >> 4 == 0)
+			return surface[localZ << 4 | localX];
+		
+		int border = getBorderIndex(localX, localZ);
+		if(borderSurface == null || border == -1)
+			return topY - 1;
+		
+		return borderSurface[border];
+	}
+	
+	/**
+	 * @return the Y coordinate of the highest non-air block in this chunk,
+	 *         or the top of the world if the heightmap wasn't copied
+	 */
+	public int getHighestSurfaceY()
+	{
+		return highestSurfaceY;
+	}
+	
+	@Override
+	public BlockState getBlockState(BlockPos pos)
+	{
+		int index = getSectionIndex(pos.getY());
+		if(index < 0 || index >= sections.length)
+			return VOID_AIR;
+		
+		int localX = pos.getX() - this.pos.getStartX();
+		int localY = pos.getY() & 15;
+		int localZ = pos.getZ() - this.pos.getStartZ();
+		if((localX | localZ) >> 4 == 0)
+		{
+			PalettedContainer<BlockState> section = sections[index];
+			return section == null ? AIR : section.get(localX, localY, localZ);
+		}
+		
+		int border = getBorderIndex(localX, localZ);
+		if(borderSections == null || borderSections[index] == null
+			|| border == -1)
+			return AIR;
+		
+		BlockState state = borderSections[index][localY * BORDER_SIZE + border];
+		return state == null ? AIR : state;
+	}
+	
+	@Override
+	public FluidState getFluidState(BlockPos pos)
+	{
+		return getBlockState(pos).getFluidState();
+	}
+	
+	/**
+	 * Block entities are not copied.
+	 */
+	@Override
+	public BlockEntity getBlockEntity(BlockPos pos)
+	{
+		return null;
+	}
+	
+	public int getLightLevel(LightType type, BlockPos pos)
+	{
+		LightCopy light = type == LightType.BLOCK ? blockLight : skyLight;
+		int index = getSectionIndex(pos.getY());
+		if(light == null || index < 0 || index >= sections.length)
+			return type.value;
+		
+		int localX = pos.getX() - this.pos.getStartX();
+		int localY = pos.getY() & 15;
+		int localZ = pos.getZ() - this.pos.getStartZ();
+		if((localX | localZ) >> 4 == 0)
+		{
+			ChunkNibbleArray section = light.sections()[index];
+			return section == null ? type.value
+				: section.get(localX, localY, localZ);
+		}
+		
+		int border = getBorderIndex(localX, localZ);
+		if(light.border() == null || light.border()[index] == null
+			|| border == -1)
+			return type.value;
+		
+		return light.border()[index][localY * BORDER_SIZE + border];
+	}
+	
+	@Override
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	@Override
+	public int getBottomY()
+	{
+		return bottomY;
+	}
+	
+	@FunctionalInterface
+	public static interface SectionFilter
+	{
+		/**
+		 * @param minY
+		 *            the lowest Y coordinate in the section
+		 * @param surfaceY
+		 *            the highest non-air block in the whole chunk
+		 */
+		public boolean test(PalettedContainer<BlockState> blocks, int minY,
+			int surfaceY);
+	}
+	
+	/**
+	 * The copied light of one {@link LightType}. Sections that weren't copied
+	 * or have no light data are null.
+	 */
+	private record LightCopy(ChunkNibbleArray[] sections, byte[][] border)
+	{}
+}
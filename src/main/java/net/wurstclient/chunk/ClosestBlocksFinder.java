@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.util.BlockUtils;
+
+/**
+ * Finds the matching blocks of a {@link BlockQuery} that are closest to a
+ * given position, by Manhattan distance.
+ *
+ * <p>
+ * Instead of sorting every match, the chunks are visited nearest-first
+ * while only the closest blocks found so far are kept in a bounded heap.
+ * Once the heap is full, all chunks that can't contain anything closer than
+ * its farthest block are skipped, so the cost mostly depends on the limit
+ * rather than the total number of matches.
+ *
+ * <p>
+ * Create it on the client thread, then call {@link #find()} on any thread.
+ */
+public final class ClosestBlocksFinder
+{
+	private final BlockPos center;
+	private final ArrayList<ChunkResult> chunks = new ArrayList<>();
+	private final int capacity;
+	
+	// max-heap of the closest blocks found so far, farthest on top
+	private int[] distances;
+	private long[] positions;
+	private int size;
+	
+	public ClosestBlocksFinder(BlockQuery query, BlockPos center, int limit)
+	{
+		this.center = center;
+		
+		// the lists themselves are never modified, only replaced
+		int total = 0;
+		for(Map.Entry<ChunkPos, LongList> entry : query.getResults().entrySet())
+		{
+			chunks.add(new ChunkResult(entry.getKey(), entry.getValue()));
+			total += entry.getValue().size();
+		}
+		
+		capacity = Math.min(limit, total);
+	}
+	
+	/**
+	 * Can only be called once.
+	 */
+	public LongOpenHashSet find()
+	{
+		if(distances != null)
+			throw new IllegalStateException();
+		
+		distances = new int[capacity];
+		positions = new long[capacity];
+		if(capacity == 0)
+			return new LongOpenHashSet();
+		
+		chunks.forEach(chunk -> chunk.minDistance = getMinDistance(chunk.pos));
+		chunks.sort(Comparator.comparingInt(chunk -> chunk.minDistance));
+		
+		for(ChunkResult chunk : chunks)
+		{
+			// this chunk and all the following ones are too far away
+			if(size == capacity && chunk.minDistance >= distances[0])
+				break;
+			
+			LongList blocks = chunk.blocks;
+			for(int i = 0; i < blocks.size(); i++)
+			{
+				long pos = blocks.getLong(i);
+				int distance = BlockUtils.getManhattanDistance(center, pos);
+				
+				if(size < capacity)
+					push(pos, distance);
+				else if(distance < distances[0])
+					replaceTop(pos, distance);
+			}
+		}
+		
+		LongOpenHashSet closestBlocks = new LongOpenHashSet(size);
+		for(int i = 0; i < size; i++)
+			closestBlocks.add(positions[i]);
+		
+		return closestBlocks;
+	}
+	
+	/**
+	 * @return a lower bound for the distance of any block in the given chunk
+	 */
+	private int getMinDistance(ChunkPos chunk)
+	{
+		int x = center.getX();
+		int z = center.getZ();
+		int dx = Math.max(0,
+			Math.max(chunk.getStartX() - x, x - chunk.getEndX()));
+		int dz = Math.max(0,
+			Math.max(chunk.getStartZ() - z, z - chunk.getEndZ()));
+		return dx + dz;
+	}
+	
+	private void push(long pos, int distance)
+	{
+		int i = size++;
+		while(i > 0)
+		{
+			int parent = (i - 1) >> 1;
+			if(distances[parent] >= distance)
+				break;
+			
+			distances[i] = distances[parent];
+			positions[i] = positions[parent];
+			i = parent;
+		}
+		
+		distances[i] = distance;
+		positions[i] = pos;
+	}
+	
+	private void replaceTop(long pos, int distance)
+	{
+		int i = 0;
+		while(true)
+		{
+			int child = 2 * i + 1;
+			if(child >= size)
+				break;
+			
+			if(child + 1 < size && distances[child + 1] > distances[child])
+				child++;
+			
+			if(distances[child] <= distance)
+				break;
+			
+			distances[i] = distances[child];
+			positions[i] = positions[child];
+			i = child;
+		}
+		
+		distances[i] = distance;
+		positions[i] = pos;
+	}
+	
+	private static final class ChunkResult
+	{
+		private final ChunkPos pos;
+		private final LongList blocks;
+		private int minDistance;
+		
+		private ChunkResult(ChunkPos pos, LongList blocks)
+		{
+			this.pos = pos;
+			this.blocks = blocks;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chunk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Remembers the results of one {@link BlockQuery} on disk, for one server
+ * and dimension, so that chunks which haven't changed since they were last
+ * searched don't need to be searched again.
+ *
+ * <p>
+ * Chunks are grouped into files of up to 32x32 chunks, the same grouping as
+ * Minecraft's region files, and each file is only read once one of its
+ * chunks is needed. Unlike region files, there is no sector table: each
+ * file is a single gzipped stream that is read in full and rewritten in
+ * full when it is saved. Every entry stores a hash of the chunk's contents
+ * and is ignored once that hash no longer matches. Blocks are stored
+ * relative to their chunk, as one int each.
+ *
+ * <p>
+ * The hash only covers the chunk's own blocks. Results that depend on
+ * neighboring blocks, such as Search's "only exposed" mode, can therefore
+ * be served outdated near chunk borders if only the neighboring chunk has
+ * changed.
+ *
+ * <p>
+ * Regions that haven't been used between two calls to {@link #save()} are
+ * dropped from memory once they are saved, so that only the regions
+ * around the player stay loaded.
+ *
+ * <p>
+ * Thread-safe. Files are read and written by whichever thread calls
+ * {@link #get(ChunkPos, long)} or {@link #save()}, so this should not be
+ * done on the client thread. They are opened as plain file streams rather
+ * than NIO channels, which would be closed if that thread was interrupted.
+ */
+public final class ScanResultCache
+{
+	private static final int MAGIC = 0x57534331;
+	
+	private final Path folder;
+	private final ConcurrentHashMap<Long, Region> regions =
+		new ConcurrentHashMap<>();
+	
+	public ScanResultCache(Path folder)
+	{
+		this.folder = folder;
+	}
+	
+	/**
+	 * @return the cached blocks of the given chunk, packed with
+	 *         {@link BlockPos#asLong()}, or null if there are none or the
+	 *         chunk has changed since they were cached
+	 */
+	public long[] get(ChunkPos pos, long hash)
+	{
+		while(true)
+		{
+			Region region = getRegion(pos);
+			synchronized(region)
+			{
+				// dropped by save() in the meantime
+				if(region.dropped)
+					continue;
+				
+				region.loadIfNeeded();
+				region.used = true;
+				CachedChunk chunk = region.entries.get(getLocalIndex(pos));
+				return chunk != null && chunk.hash() == hash ? chunk.blocks()
+					: null;
+			}
+		}
+	}
+	
+	public void put(ChunkPos pos, long hash, LongList blocks)
+	{
+		while(true)
+		{
+			Region region = getRegion(pos);
+			synchronized(region)
+			{
+				// dropped by save() in the meantime
+				if(region.dropped)
+					continue;
+				
+				region.loadIfNeeded();
+				region.used = true;
+				region.entries.put(getLocalIndex(pos),
+					new CachedChunk(hash, blocks.toLongArray()));
+				region.dirty = true;
+				return;
+			}
+		}
+	}
+	
+	public Path getFolder()
+	{
+		return folder;
+	}
+	
+	/**
+	 * Writes all regions that have changed since they were last saved, then
+	 * drops the ones that haven't been used since the last call.
+	 */
+	public void save()
+	{
+		for(Iterator<Region> itr = regions.values().iterator(); itr.hasNext();)
+		{
+			Region region = itr.next();
+			synchronized(region)
+			{
+				region.saveIfDirty();
+				if(region.used || region.dirty)
+				{
+					region.used = false;
+					continue;
+				}
+				
+				region.dropped = true;
+				itr.remove();
+			}
+		}
+	}
+	
+	private Region getRegion(ChunkPos pos)
+	{
+		int regionX = pos.getRegionX();
+		int regionZ = pos.getRegionZ();
+		return regions.computeIfAbsent(ChunkPos.toLong(regionX, regionZ),
+			key -> new Region(folder, regionX, regionZ));
+	}
+	
+	private static int getLocalIndex(ChunkPos pos)
+	{
+		return pos.getRegionRelativeX() | pos.getRegionRelativeZ() << 5;
+	}
+	
+	private record CachedChunk(long hash, long[] blocks)
+	{}
+	
+	private static final class Region
+	{
+		private final Path path;
+		private final int regionX;
+		private final int regionZ;
+		private final Int2ObjectOpenHashMap<CachedChunk> entries =
+			new Int2ObjectOpenHashMap<>();
+		private boolean loaded;
+		private boolean loadFailed;
+		private boolean dirty;
+		private boolean used;
+		private boolean dropped;
+		
+		private Region(Path folder, int regionX, int regionZ)
+		{
+			path = folder.resolve("r." + regionX + "." + regionZ + ".bin");
+			this.regionX = regionX;
+			this.regionZ = regionZ;
+		}
+		
+		private void loadIfNeeded()
+		{
+			if(loaded || loadFailed)
+				return;
+			
+			if(!Files.exists(path))
+			{
+				loaded = true;
+				return;
+			}
+			
+			try(DataInputStream in =
+				new DataInputStream(new BufferedInputStream(
+					new GZIPInputStream(new FileInputStream(path.toFile())))))
+			{
+				if(in.readInt() != MAGIC)
+					throw new IOException("Unknown file format");
+				
+				int count = in.readInt();
+				for(int i = 0; i < count; i++)
+				{
+					int index = in.readUnsignedShort();
+					long hash = in.readLong();
+					long[] blocks = new long[in.readInt()];
+					
+					int startX = (regionX << 5 | index & 31) << 4;
+					int startZ = (regionZ << 5 | index >> 5) << 4;
+					for(int j = 0; j < blocks.length; j++)
+					{
+						int block = in.readInt();
+						blocks[j] = BlockPos.asLong(startX + (block & 15),
+							block >> 8, startZ + (block >> 4 & 15));
+					}
+					
+					entries.put(index, new CachedChunk(hash, blocks));
+				}
+				
+				loaded = true;
+				
+			}catch(IOException e)
+			{
+				System.out.println("Couldn't load " + path.getFileName());
+				e.printStackTrace();
+				entries.clear();
+				
+				// Saving now would replace the file with only the chunks
+				// searched since, losing all the others.
+				loadFailed = true;
+			}
+		}
+		
+		private void saveIfDirty()
+		{
+			if(!dirty || !loaded)
+				return;
+			
+			try
+			{
+				Files.createDirectories(path.getParent());
+				
+				// write to a temporary file first, so that a crash can't
+				// leave a half-written region behind
+				Path tmp = Files.createTempFile(path.getParent(),
+					path.getFileName().toString(), ".tmp");
+				try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(
+						new FileOutputStream(tmp.toFile())))))
+				{
+					out.writeInt(MAGIC);
+					out.writeInt(entries.size());
+					for(Int2ObjectMap.Entry<CachedChunk> entry : entries
+						.int2ObjectEntrySet())
+					{
+						out.writeShort(entry.getIntKey());
+						out.writeLong(entry.getValue().hash());
+						
+						long[] blocks = entry.getValue().blocks();
+						out.writeInt(blocks.length);
+						for(long block : blocks)
+							out.writeInt(BlockPos.unpackLongY(block) << 8
+								| (BlockPos.unpackLongZ(block) & 15) << 4
+								| BlockPos.unpackLongX(block) & 15);
+					}
+				}
+				
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+				dirty = false;
+				
+			}catch(IOException e)
+			{
+				System.out.println("Couldn't save " + path.getFileName());
+				e.printStackTrace();
+			}
+		}
+	}
+}
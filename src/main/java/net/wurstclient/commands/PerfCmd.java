@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.commands;
+
+import java.util.List;
+
+import net.wurstclient.command.CmdException;
+import net.wurstclient.command.CmdSyntaxError;
+import net.wurstclient.command.Command;
+import net.wurstclient.event.EventProfiler;
+import net.wurstclient.event.EventProfiler.Report;
+import net.wurstclient.hud.EventProfilerHUD;
+import net.wurstclient.util.ChatUtils;
+
+public final class PerfCmd extends Command
+{
+	private static final int MAX_LINES = 10;
+	
+	public PerfCmd()
+	{
+		super("perf",
+			"Measures how much time each hack spends\n"
+				+ "handling events. Sampling is off by default.",
+			".perf [on|off]", ".perf report", ".perf reset", ".perf hud");
+	}
+	
+	@Override
+	public void call(String[] args) throws CmdException
+	{
+		if(args.length > 1)
+			throw new CmdSyntaxError();
+		
+		EventProfiler profiler = WURST.getEventManager().getProfiler();
+		
+		if(args.length == 0)
+		{
+			setEnabled(profiler, !profiler.isEnabled());
+			return;
+		}
+		
+		switch(args[0].toLowerCase())
+		{
+			default:
+			throw new CmdSyntaxError();
+			
+			case "on":
+			setEnabled(profiler, true);
+			break;
+			
+			case "off":
+			setEnabled(profiler, false);
+			break;
+			
+			case "report":
+			report(profiler);
+			break;
+			
+			case "reset":
+			profiler.reset();
+			ChatUtils.message("Event profiler reset.");
+			break;
+			
+			case "hud":
+			toggleHud(profiler);
+			break;
+		}
+	}
+	
+	private void setEnabled(EventProfiler profiler, boolean enabled)
+	{
+		profiler.setEnabled(enabled);
+		ChatUtils.message(
+			"Event profiler " + (enabled ? "enabled." : "disabled."));
+	}
+	
+	private void toggleHud(EventProfiler profiler)
+	{
+		boolean visible = !profiler.isHudVisible();
+		profiler.setHudVisible(visible);
+		if(!visible)
+		{
+			ChatUtils.message("Event profiler HUD hidden.");
+			return;
+		}
+		
+		// the HUD would stay empty otherwise
+		if(!profiler.isEnabled())
+			setEnabled(profiler, true);
+		
+		ChatUtils.message("Event profiler HUD shown.");
+	}
+	
+	private void report(EventProfiler profiler)
+	{
+		List<Report> reports = profiler.getReports();
+		if(reports.isEmpty())
+		{
+			ChatUtils.message("No samples yet. Use .perf on to start.");
+			return;
+		}
+		
+		ChatUtils.message("Listener (event): p50 / p99 / max, calls, total");
+		for(Report report : reports.subList(0,
+			Math.min(reports.size(), MAX_LINES)))
+			ChatUtils.message(EventProfilerHUD.format(report) + ", ~"
+				+ report.calls() + ", "
+				+ EventProfilerHUD.formatNanos(report.totalNanos()));
+	}
+	
+	@Override
+	public String getPrimaryAction()
+	{
+		return "Show Report";
+	}
+	
+	@Override
+	public void doPrimaryAction()
+	{
+		WURST.getCmdProcessor().process("perf report");
+	}
+}
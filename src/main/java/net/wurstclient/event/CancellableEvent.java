@@ -20,4 +20,13 @@ public abstract class CancellableEvent<T extends Listener> extends Event<T>
 	{
 		return cancelled;
 	}
+	
+	/**
+	 * Only for events that reuse the same instance, like
+	 * {@link net.wurstclient.events.IsNormalCubeListener.IsNormalCubeEvent}.
+	 */
+	protected void resetCancelled()
+	{
+		cancelled = false;
+	}
 }
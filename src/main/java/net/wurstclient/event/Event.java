@@ -7,11 +7,20 @@
  */
 package net.wurstclient.event;
 
-import java.util.ArrayList;
-
 public abstract class Event<T extends Listener>
 {
-	public abstract void fire(ArrayList<T> listeners);
+	public abstract void fire(T[] listeners);
 	
 	public abstract Class<T> getListenerType();
+	
+	/**
+	 * Returns the key that listeners can subscribe to through
+	 * {@link EventManager#add(Class, Listener, Class...)}, or
+	 * <code>null</code> if this event should always reach all of its
+	 * listeners.
+	 */
+	public Class<?> getKey()
+	{
+		return null;
+	}
 }
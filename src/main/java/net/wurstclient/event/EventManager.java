@@ -7,21 +7,25 @@
  */
 package net.wurstclient.event;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.minecraft.util.crash.CrashException;
 import net.minecraft.util.crash.CrashReport;
 import net.minecraft.util.crash.CrashReportSection;
 import net.wurstclient.WurstClient;
 
+/**
+ * Events can be fired from any thread (see {@link FiredOn}), while listeners
+ * are usually added and removed on the client thread. Firing an event never
+ * blocks and, unless the {@link EventProfiler} is on, never allocates
+ * anything.
+ */
 public final class EventManager
 {
 	private final WurstClient wurst;
-	private final HashMap<Class<? extends Listener>, ArrayList<? extends Listener>> listenerMap =
-		new HashMap<>();
+	private final ConcurrentHashMap<Class<? extends Listener>, ListenerList<? extends Listener>> listenerMap =
+		new ConcurrentHashMap<>();
+	private final EventProfiler profiler = new EventProfiler();
 	
 	public EventManager(WurstClient wurst)
 	{
@@ -42,6 +46,22 @@ public final class EventManager
 		eventManager.fireImpl(event);
 	}
 	
+	/**
+	 * Returns true if Wurst is enabled and at least one listener of the given
+	 * type is registered. Mixins of very frequently fired events can check
+	 * this before creating the event, so that nothing is allocated when no
+	 * hack is listening.
+	 */
+	public static boolean hasListeners(Class<? extends Listener> type)
+	{
+		EventManager eventManager = WurstClient.INSTANCE.getEventManager();
+		if(eventManager == null || !eventManager.wurst.isEnabled())
+			return false;
+		
+		ListenerList<?> list = eventManager.listenerMap.get(type);
+		return list != null && !list.isEmpty();
+	}
+	
 	private <L extends Listener, E extends Event<L>> void fireImpl(E event)
 	{
 		if(!wurst.isEnabled())
@@ -49,24 +69,24 @@ public final class EventManager
 		
 		try
 		{
-			Class<L> type = event.getListenerType();
-			@SuppressWarnings("unchecked")
-			ArrayList<L> listeners = (ArrayList<L>)listenerMap.get(type);
-			
-			if(listeners == null || listeners.isEmpty())
+			ListenerList<L> list = getListenerList(event.getListenerType());
+			if(list == null)
 				return;
-				
-			// Creating a copy of the list to avoid concurrent modification
-			// issues.
-			ArrayList<L> listeners2 = new ArrayList<>(listeners);
 			
-			// remove() sets an element to null before removing it. When one
-			// thread calls remove() while another calls fire(), it is possible
-			// for this list to contain null elements, which need to be filtered
-			// out.
-			listeners2.removeIf(Objects::isNull);
+			Class<?> key = event.getKey();
+			L[] listeners = key == null ? list.get() : list.get(key);
+			if(listeners.length == 0)
+				return;
 			
-			event.fire(listeners2);
+			// The array is never modified after it has been published, so
+			// it's safe to iterate over it without copying it first, even if
+			// add() or remove() is called during the event.
+			if(profiler.isEnabled()
+				&& profiler.shouldSample(list.countFiredEvent()))
+				fireAndProfile(event, listeners,
+					list.getSingleListenerArray());
+			else
+				event.fire(listeners);
 			
 		}catch(Throwable e)
 		{
@@ -80,21 +100,42 @@ public final class EventManager
 		}
 	}
 	
-	public <L extends Listener> void add(Class<L> type, L listener)
+	private <L extends Listener, E extends Event<L>> void fireAndProfile(
+		E event, L[] listeners, L[] single)
+	{
+		// Firing the event at one listener at a time gives the same result as
+		// firing it at all of them, as long as cancelled events stop early.
+		for(L listener : listeners)
+		{
+			single[0] = listener;
+			long start = System.nanoTime();
+			event.fire(single);
+			profiler.record(event.getListenerType(), listener,
+				System.nanoTime() - start);
+			
+			if(event instanceof CancellableEvent<?> cancellable
+				&& cancellable.isCancelled())
+				break;
+		}
+		
+		single[0] = null;
+	}
+	
+	/**
+	 * Adds the given listener. If any keys are given, the listener will only
+	 * receive events whose {@link Event#getKey()} is one of those keys or a
+	 * subtype of one of them. Events without a key are always received.
+	 */
+	public <L extends Listener> void add(Class<L> type, L listener,
+		Class<?>... keys)
 	{
 		try
 		{
 			@SuppressWarnings("unchecked")
-			ArrayList<L> listeners = (ArrayList<L>)listenerMap.get(type);
-			
-			if(listeners == null)
-			{
-				listeners = new ArrayList<>(Arrays.asList(listener));
-				listenerMap.put(type, listeners);
-				return;
-			}
+			ListenerList<L> list = (ListenerList<L>)listenerMap
+				.computeIfAbsent(type, ListenerList::new);
 			
-			listeners.add(listener);
+			list.add(listener, keys);
 			
 		}catch(Throwable e)
 		{
@@ -114,11 +155,9 @@ public final class EventManager
 	{
 		try
 		{
-			@SuppressWarnings("unchecked")
-			ArrayList<L> listeners = (ArrayList<L>)listenerMap.get(type);
-			
-			if(listeners != null)
-				listeners.remove(listener);
+			ListenerList<L> list = getListenerList(type);
+			if(list != null)
+				list.remove(listener);
 			
 		}catch(Throwable e)
 		{
@@ -133,4 +172,15 @@ public final class EventManager
 			throw new CrashException(report);
 		}
 	}
+	
+	public EventProfiler getProfiler()
+	{
+		return profiler;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <L extends Listener> ListenerList<L> getListenerList(Class<L> type)
+	{
+		return (ListenerList<L>)listenerMap.get(type);
+	}
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.wurstclient.Feature;
+
+/**
+ * Measures how long each listener takes to handle its events. Only every
+ * {@value #SAMPLE_INTERVAL}th event of each type is timed, which keeps the
+ * overhead low enough to leave it running while playing. When the profiler
+ * is turned off, {@link EventManager} doesn't call it at all.
+ */
+public final class EventProfiler
+{
+	public static final int SAMPLE_INTERVAL = 32;
+	private static final int WINDOW_SIZE = 512;
+	
+	private final ConcurrentHashMap<Key, ListenerStats> stats =
+		new ConcurrentHashMap<>();
+	private volatile boolean enabled;
+	private volatile boolean hudVisible;
+	
+	/**
+	 * Takes the number of events of one type that have been fired so far,
+	 * counted separately for each type so that the fixed order in which
+	 * events fire during a tick can't make one type always or never sampled.
+	 */
+	boolean shouldSample(int firedEvents)
+	{
+		return firedEvents % SAMPLE_INTERVAL == 0;
+	}
+	
+	void record(Class<? extends Listener> type, Listener listener,
+		long nanos)
+	{
+		stats.computeIfAbsent(new Key(type, listener), ListenerStats::new)
+			.add(nanos);
+	}
+	
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+	
+	public boolean isHudVisible()
+	{
+		return hudVisible;
+	}
+	
+	public void setHudVisible(boolean hudVisible)
+	{
+		this.hudVisible = hudVisible;
+	}
+	
+	public void reset()
+	{
+		stats.clear();
+	}
+	
+	/**
+	 * Returns a snapshot of the current statistics, sorted by the estimated
+	 * total time that each listener has spent handling events.
+	 */
+	public List<Report> getReports()
+	{
+		ArrayList<Report> reports = new ArrayList<>();
+		for(ListenerStats listenerStats : stats.values())
+			reports.add(listenerStats.toReport());
+		
+		reports.sort(Comparator.comparingLong(Report::totalNanos).reversed());
+		return reports;
+	}
+	
+	private static String getListenerName(Listener listener)
+	{
+		if(listener instanceof Feature feature)
+			return feature.getName();
+		
+		return listener.getClass().getSimpleName();
+	}
+	
+	private record Key(Class<? extends Listener> type, Listener listener)
+	{}
+	
+	private static final class ListenerStats
+	{
+		private final Key key;
+		private final long[] window = new long[WINDOW_SIZE];
+		private long samples;
+		private long totalNanos;
+		
+		public ListenerStats(Key key)
+		{
+			this.key = key;
+		}
+		
+		public synchronized void add(long nanos)
+		{
+			window[(int)(samples % WINDOW_SIZE)] = nanos;
+			samples++;
+			totalNanos += nanos;
+		}
+		
+		public synchronized Report toReport()
+		{
+			int size = (int)Math.min(samples, WINDOW_SIZE);
+			long[] sorted = Arrays.copyOf(window, size);
+			Arrays.sort(sorted);
+			
+			return new Report(getListenerName(key.listener),
+				key.type.getSimpleName(), samples * SAMPLE_INTERVAL,
+				totalNanos * SAMPLE_INTERVAL, percentile(sorted, 0.5),
+				percentile(sorted, 0.99), size > 0 ? sorted[size - 1] : 0);
+		}
+		
+		private static long percentile(long[] sorted, double p)
+		{
+			if(sorted.length == 0)
+				return 0;
+			
+			return sorted[(int)Math.ceil(p * sorted.length) - 1];
+		}
+	}
+	
+	/**
+	 * Statistics of one listener for one event type. Calls and total time are
+	 * estimated from the samples. The percentiles and the maximum only cover
+	 * the last {@value EventProfiler#WINDOW_SIZE} samples.
+	 */
+	public record Report(String listener, String type, long calls,
+		long totalNanos, long p50Nanos, long p99Nanos, long maxNanos)
+	{}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.event;
+
+/**
+ * The threads that a Wurst event can be fired on. Listeners of any event that
+ * isn't fired exclusively on {@link #CLIENT} must be thread-safe.
+ *
+ * @see FiredOn
+ */
+public enum EventThread
+{
+	/**
+	 * The main client thread, which also does all of the rendering.
+	 */
+	CLIENT,
+	
+	/**
+	 * The Netty thread that reads packets from the server.
+	 */
+	NETWORK,
+	
+	/**
+	 * Minecraft's chunk builder worker threads. Several of them can fire the
+	 * same event at the same time. Chunks that are rebuilt synchronously can
+	 * also fire these events on the client thread.
+	 */
+	CHUNK_BUILDER,
+	
+	/**
+	 * Any thread, including the integrated server.
+	 */
+	ANY;
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.event;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A copy-on-write list of all listeners of one type. Reads never block and
+ * never see a half-updated array, which is what lets events be fired from
+ * the network thread and from chunk builder threads while the client thread
+ * adds and removes listeners.
+ *
+ * <p>
+ * Listeners can optionally subscribe to specific keys, such as packet
+ * classes. Events with a key (see {@link Event#getKey()}) only reach the
+ * listeners that subscribed to that key or one of its supertypes, plus the
+ * ones that didn't subscribe to any keys.
+ */
+final class ListenerList<L extends Listener>
+{
+	private final AtomicReference<Snapshot<L>> snapshot;
+	
+	// only used while the EventProfiler is on
+	private final ThreadLocal<L[]> singleListener;
+	private int firedEvents;
+	
+	@SuppressWarnings("unchecked")
+	public ListenerList(Class<L> type)
+	{
+		L[] empty = (L[])Array.newInstance(type, 0);
+		snapshot =
+			new AtomicReference<>(new Snapshot<>(empty, new Class<?>[0][]));
+		singleListener =
+			ThreadLocal.withInitial(() -> (L[])Array.newInstance(type, 1));
+	}
+	
+	public L[] get()
+	{
+		return snapshot.get().listeners;
+	}
+	
+	public L[] get(Class<?> key)
+	{
+		return snapshot.get().getFiltered(key);
+	}
+	
+	/**
+	 * Counts one fired event of this type and returns the new count. Used by
+	 * the {@link EventProfiler} to sample every nth event of each type.
+	 * Events fired on different threads at the same time can be counted
+	 * once, which only makes the sampling slightly less regular.
+	 */
+	public int countFiredEvent()
+	{
+		return ++firedEvents;
+	}
+	
+	/**
+	 * Returns an array with room for one listener, reused for each thread,
+	 * so that the {@link EventProfiler} can time the listeners one at a
+	 * time without allocating anything.
+	 */
+	public L[] getSingleListenerArray()
+	{
+		return singleListener.get();
+	}
+	
+	public boolean isEmpty()
+	{
+		return snapshot.get().listeners.length == 0;
+	}
+	
+	public void add(L listener, Class<?>[] keys)
+	{
+		Class<?>[] keysOrNull = keys.length == 0 ? null : keys.clone();
+		
+		Snapshot<L> oldSnapshot;
+		Snapshot<L> newSnapshot;
+		do
+		{
+			oldSnapshot = snapshot.get();
+			int length = oldSnapshot.listeners.length;
+			
+			L[] newListeners = Arrays.copyOf(oldSnapshot.listeners, length + 1);
+			newListeners[length] = listener;
+			
+			Class<?>[][] newKeys = Arrays.copyOf(oldSnapshot.keys, length + 1);
+			newKeys[length] = keysOrNull;
+			
+			newSnapshot = new Snapshot<>(newListeners, newKeys);
+			
+		}while(!snapshot.compareAndSet(oldSnapshot, newSnapshot));
+	}
+	
+	public void remove(L listener)
+	{
+		Snapshot<L> oldSnapshot;
+		Snapshot<L> newSnapshot;
+		do
+		{
+			oldSnapshot = snapshot.get();
+			
+			int index = indexOf(oldSnapshot.listeners, listener);
+			if(index == -1)
+				return;
+			
+			newSnapshot = new Snapshot<>(
+				removeIndex(oldSnapshot.listeners, index),
+				removeIndex(oldSnapshot.keys, index));
+			
+		}while(!snapshot.compareAndSet(oldSnapshot, newSnapshot));
+	}
+	
+	private static int indexOf(Listener[] array, Listener listener)
+	{
+		for(int i = 0; i < array.length; i++)
+			if(array[i].equals(listener))
+				return i;
+			
+		return -1;
+	}
+	
+	private static <T> T[] removeIndex(T[] array, int index)
+	{
+		T[] newArray = Arrays.copyOf(array, array.length - 1);
+		System.arraycopy(array, index + 1, newArray, index,
+			array.length - index - 1);
+		return newArray;
+	}
+	
+	private static final class Snapshot<L extends Listener>
+	{
+		private final L[] listeners;
+		private final Class<?>[][] keys;
+		private final boolean keyed;
+		
+		// Filled lazily, one entry per key that has been fired so far. Since
+		// a new snapshot is created whenever a listener is added or removed,
+		// this never needs to be invalidated.
+		private final ConcurrentHashMap<Class<?>, L[]> filtered =
+			new ConcurrentHashMap<>();
+		
+		public Snapshot(L[] listeners, Class<?>[][] keys)
+		{
+			this.listeners = listeners;
+			this.keys = keys;
+			keyed = Arrays.stream(keys).anyMatch(k -> k != null);
+		}
+		
+		public L[] getFiltered(Class<?> key)
+		{
+			if(!keyed)
+				return listeners;
+			
+			L[] result = filtered.get(key);
+			if(result != null)
+				return result;
+			
+			result = filter(key);
+			filtered.put(key, result);
+			return result;
+		}
+		
+		private L[] filter(Class<?> key)
+		{
+			L[] result = Arrays.copyOf(listeners, listeners.length);
+			int size = 0;
+			
+			for(int i = 0; i < listeners.length; i++)
+				if(matches(keys[i], key))
+					result[size++] = listeners[i];
+				
+			return Arrays.copyOf(result, size);
+		}
+		
+		private static boolean matches(Class<?>[] subscribedKeys, Class<?> key)
+		{
+			if(subscribedKeys == null)
+				return true;
+			
+			for(Class<?> subscribedKey : subscribedKeys)
+				if(subscribedKey.isAssignableFrom(key))
+					return true;
+				
+			return false;
+		}
+	}
+}
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -44,7 +42,7 @@ public interface AirStrafingSpeedListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<AirStrafingSpeedListener> listeners)
+		public void fire(AirStrafingSpeedListener[] listeners)
 		{
 			for(AirStrafingSpeedListener listener : listeners)
 				listener.onGetAirStrafingSpeed(this);
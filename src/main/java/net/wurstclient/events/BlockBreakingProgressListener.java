@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.wurstclient.event.Event;
@@ -32,7 +30,7 @@ public interface BlockBreakingProgressListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<BlockBreakingProgressListener> listeners)
+		public void fire(BlockBreakingProgressListener[] listeners)
 		{
 			for(BlockBreakingProgressListener listener : listeners)
 				listener.onBlockBreakingProgress(this);
@@ -7,12 +7,13 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.util.shape.VoxelShape;
 import net.wurstclient.event.Event;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.ANY)
 public interface CactusCollisionShapeListener extends Listener
 {
 	public void onCactusCollisionShape(CactusCollisionShapeEvent event);
@@ -33,7 +34,7 @@ public interface CactusCollisionShapeListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<CactusCollisionShapeListener> listeners)
+		public void fire(CactusCollisionShapeListener[] listeners)
 		{
 			for(CactusCollisionShapeListener listener : listeners)
 				listener.onCactusCollisionShape(this);
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
 
@@ -21,8 +19,7 @@ public interface CameraTransformViewBobbingListener extends Listener
 		extends CancellableEvent<CameraTransformViewBobbingListener>
 	{
 		@Override
-		public void fire(
-			ArrayList<CameraTransformViewBobbingListener> listeners)
+		public void fire(CameraTransformViewBobbingListener[] listeners)
 		{
 			for(CameraTransformViewBobbingListener listener : listeners)
 			{
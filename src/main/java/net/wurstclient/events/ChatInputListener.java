@@ -7,7 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import net.minecraft.client.gui.hud.ChatHudLine;
@@ -48,7 +47,7 @@ public interface ChatInputListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<ChatInputListener> listeners)
+		public void fire(ChatInputListener[] listeners)
 		{
 			for(ChatInputListener listener : listeners)
 			{
@@ -7,7 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
 import java.util.Objects;
 
 import net.wurstclient.event.CancellableEvent;
@@ -50,7 +49,7 @@ public interface ChatOutputListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<ChatOutputListener> listeners)
+		public void fire(ChatOutputListener[] listeners)
 		{
 			for(ChatOutputListener listener : listeners)
 			{
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.events;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.chunk.ChunkChange;
+import net.wurstclient.event.Event;
+import net.wurstclient.event.Listener;
+
+public interface ChunkChangeSetListener extends Listener
+{
+	public void onChunkChangeSet(ChunkChangeSetEvent event);
+	
+	public static class ChunkChangeSetEvent
+		extends Event<ChunkChangeSetListener>
+	{
+		private final Map<ChunkPos, ChunkChange> changes;
+		
+		public ChunkChangeSetEvent(Map<ChunkPos, ChunkChange> changes)
+		{
+			this.changes = Collections.unmodifiableMap(changes);
+		}
+		
+		public Collection<ChunkChange> getChanges()
+		{
+			return changes.values();
+		}
+		
+		/**
+		 * Returns what happened to the given chunk during this tick, or
+		 * <code>null</code> if it didn't change.
+		 */
+		public ChunkChange getChange(ChunkPos pos)
+		{
+			return changes.get(pos);
+		}
+		
+		public boolean isChanged(ChunkPos pos)
+		{
+			return changes.containsKey(pos);
+		}
+		
+		@Override
+		public void fire(ChunkChangeSetListener[] listeners)
+		{
+			for(ChunkChangeSetListener listener : listeners)
+				listener.onChunkChangeSet(this);
+		}
+		
+		@Override
+		public Class<ChunkChangeSetListener> getListenerType()
+		{
+			return ChunkChangeSetListener.class;
+		}
+	}
+}
@@ -7,10 +7,10 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.network.packet.Packet;
 import net.wurstclient.event.CancellableEvent;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 import net.wurstclient.events.PacketOutputListener.PacketOutputEvent;
 
@@ -19,6 +19,7 @@ import net.wurstclient.events.PacketOutputListener.PacketOutputEvent;
  * sent before the client has finished connecting to the server. Most hacks
  * should use {@link PacketOutputListener} instead.
  */
+@FiredOn(EventThread.ANY)
 public interface ConnectionPacketOutputListener extends Listener
 {
 	public void onSentConnectionPacket(ConnectionPacketOutputEvent event);
@@ -49,7 +50,7 @@ public interface ConnectionPacketOutputListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<ConnectionPacketOutputListener> listeners)
+		public void fire(ConnectionPacketOutputListener[] listeners)
 		{
 			for(ConnectionPacketOutputListener listener : listeners)
 			{
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -21,7 +19,7 @@ public interface DeathListener extends Listener
 		public static final DeathEvent INSTANCE = new DeathEvent();
 		
 		@Override
-		public void fire(ArrayList<DeathListener> listeners)
+		public void fire(DeathListener[] listeners)
 		{
 			for(DeathListener listener : listeners)
 				listener.onDeath();
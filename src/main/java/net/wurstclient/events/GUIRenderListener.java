@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.client.gui.DrawContext;
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
@@ -29,7 +27,7 @@ public interface GUIRenderListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<GUIRenderListener> listeners)
+		public void fire(GUIRenderListener[] listeners)
 		{
 			for(GUIRenderListener listener : listeners)
 				listener.onRenderGUI(context, partialTicks);
@@ -7,12 +7,13 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.block.BlockState;
 import net.wurstclient.event.Event;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.CHUNK_BUILDER)
 public interface GetAmbientOcclusionLightLevelListener extends Listener
 {
 	public void onGetAmbientOcclusionLightLevel(
@@ -21,9 +22,13 @@ public interface GetAmbientOcclusionLightLevelListener extends Listener
 	public static class GetAmbientOcclusionLightLevelEvent
 		extends Event<GetAmbientOcclusionLightLevelListener>
 	{
-		private final BlockState state;
+		private static final ThreadLocal<GetAmbientOcclusionLightLevelEvent> REUSABLE =
+			ThreadLocal.withInitial(
+				() -> new GetAmbientOcclusionLightLevelEvent(null, 0));
+		
+		private BlockState state;
 		private float lightLevel;
-		private final float defaultLightLevel;
+		private float defaultLightLevel;
 		
 		public GetAmbientOcclusionLightLevelEvent(BlockState state,
 			float lightLevel)
@@ -33,6 +38,21 @@ public interface GetAmbientOcclusionLightLevelListener extends Listener
 			defaultLightLevel = lightLevel;
 		}
 		
+		/**
+		 * Returns the current thread's instance of this event, reset to the
+		 * given block. The returned event must not be used anymore once this
+		 * method is called again on the same thread.
+		 */
+		public static GetAmbientOcclusionLightLevelEvent reuse(
+			BlockState state, float lightLevel)
+		{
+			GetAmbientOcclusionLightLevelEvent event = REUSABLE.get();
+			event.state = state;
+			event.lightLevel = lightLevel;
+			event.defaultLightLevel = lightLevel;
+			return event;
+		}
+		
 		public BlockState getState()
 		{
 			return state;
@@ -54,8 +74,7 @@ public interface GetAmbientOcclusionLightLevelListener extends Listener
 		}
 		
 		@Override
-		public void fire(
-			ArrayList<GetAmbientOcclusionLightLevelListener> listeners)
+		public void fire(GetAmbientOcclusionLightLevelListener[] listeners)
 		{
 			for(GetAmbientOcclusionLightLevelListener listener : listeners)
 				listener.onGetAmbientOcclusionLightLevel(this);
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -27,7 +25,7 @@ public interface HitResultRayTraceListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<HitResultRayTraceListener> listeners)
+		public void fire(HitResultRayTraceListener[] listeners)
 		{
 			for(HitResultRayTraceListener listener : listeners)
 				listener.onHitResultRayTrace(float_1);
@@ -7,11 +7,12 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.CancellableEvent;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.ANY)
 public interface IsNormalCubeListener extends Listener
 {
 	public void onIsNormalCube(IsNormalCubeEvent event);
@@ -19,8 +20,23 @@ public interface IsNormalCubeListener extends Listener
 	public static class IsNormalCubeEvent
 		extends CancellableEvent<IsNormalCubeListener>
 	{
+		private static final ThreadLocal<IsNormalCubeEvent> REUSABLE =
+			ThreadLocal.withInitial(IsNormalCubeEvent::new);
+		
+		/**
+		 * Returns the current thread's instance of this event, reset to its
+		 * initial state. The returned event must not be used anymore once
+		 * this method is called again on the same thread.
+		 */
+		public static IsNormalCubeEvent reuse()
+		{
+			IsNormalCubeEvent event = REUSABLE.get();
+			event.resetCancelled();
+			return event;
+		}
+		
 		@Override
-		public void fire(ArrayList<IsNormalCubeListener> listeners)
+		public void fire(IsNormalCubeListener[] listeners)
 		{
 			for(IsNormalCubeListener listener : listeners)
 			{
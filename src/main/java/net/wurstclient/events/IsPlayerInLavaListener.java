@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -44,7 +42,7 @@ public interface IsPlayerInLavaListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<IsPlayerInLavaListener> listeners)
+		public void fire(IsPlayerInLavaListener[] listeners)
 		{
 			for(IsPlayerInLavaListener listener : listeners)
 				listener.onIsPlayerInLava(this);
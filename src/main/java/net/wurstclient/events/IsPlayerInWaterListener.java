@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -44,7 +42,7 @@ public interface IsPlayerInWaterListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<IsPlayerInWaterListener> listeners)
+		public void fire(IsPlayerInWaterListener[] listeners)
 		{
 			for(IsPlayerInWaterListener listener : listeners)
 				listener.onIsPlayerInWater(this);
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -33,7 +31,7 @@ public interface KeyPressListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<KeyPressListener> listeners)
+		public void fire(KeyPressListener[] listeners)
 		{
 			for(KeyPressListener listener : listeners)
 				listener.onKeyPress(this);
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -36,7 +34,7 @@ public interface KnockbackListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<KnockbackListener> listeners)
+		public void fire(KnockbackListener[] listeners)
 		{
 			for(KnockbackListener listener : listeners)
 				listener.onKnockback(this);
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
 
@@ -20,7 +18,7 @@ public interface LeftClickListener extends Listener
 		extends CancellableEvent<LeftClickListener>
 	{
 		@Override
-		public void fire(ArrayList<LeftClickListener> listeners)
+		public void fire(LeftClickListener[] listeners)
 		{
 			for(LeftClickListener listener : listeners)
 			{
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -26,7 +24,7 @@ public interface MouseScrollListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<MouseScrollListener> listeners)
+		public void fire(MouseScrollListener[] listeners)
 		{
 			for(MouseScrollListener listener : listeners)
 				listener.onMouseScroll(amount);
@@ -7,12 +7,14 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.network.packet.Packet;
 import net.wurstclient.event.CancellableEvent;
+import net.wurstclient.event.EventManager;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.NETWORK)
 public interface PacketInputListener extends Listener
 {
 	public void onReceivedPacket(PacketInputEvent event);
@@ -32,8 +34,18 @@ public interface PacketInputListener extends Listener
 			return packet;
 		}
 		
+		/**
+		 * Listeners can subscribe to specific packet classes by passing them
+		 * as keys when adding themselves to the {@link EventManager}.
+		 */
+		@Override
+		public Class<?> getKey()
+		{
+			return packet.getClass();
+		}
+		
 		@Override
-		public void fire(ArrayList<PacketInputListener> listeners)
+		public void fire(PacketInputListener[] listeners)
 		{
 			for(PacketInputListener listener : listeners)
 			{
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.network.packet.Packet;
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
@@ -38,7 +36,7 @@ public interface PacketOutputListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<PacketOutputListener> listeners)
+		public void fire(PacketOutputListener[] listeners)
 		{
 			for(PacketOutputListener listener : listeners)
 			{
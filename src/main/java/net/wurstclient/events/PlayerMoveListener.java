@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 import net.wurstclient.mixinterface.IClientPlayerEntity;
@@ -27,7 +25,7 @@ public interface PlayerMoveListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<PlayerMoveListener> listeners)
+		public void fire(PlayerMoveListener[] listeners)
 		{
 			for(PlayerMoveListener listener : listeners)
 				listener.onPlayerMove(player);
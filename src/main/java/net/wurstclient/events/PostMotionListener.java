@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -21,7 +19,7 @@ public interface PostMotionListener extends Listener
 		public static final PostMotionEvent INSTANCE = new PostMotionEvent();
 		
 		@Override
-		public void fire(ArrayList<PostMotionListener> listeners)
+		public void fire(PostMotionListener[] listeners)
 		{
 			for(PostMotionListener listener : listeners)
 				listener.onPostMotion();
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -21,7 +19,7 @@ public interface PreMotionListener extends Listener
 		public static final PreMotionEvent INSTANCE = new PreMotionEvent();
 		
 		@Override
-		public void fire(ArrayList<PreMotionListener> listeners)
+		public void fire(PreMotionListener[] listeners)
 		{
 			for(PreMotionListener listener : listeners)
 				listener.onPreMotion();
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.block.entity.BlockEntity;
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
@@ -33,7 +31,7 @@ public interface RenderBlockEntityListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<RenderBlockEntityListener> listeners)
+		public void fire(RenderBlockEntityListener[] listeners)
 		{
 			for(RenderBlockEntityListener listener : listeners)
 			{
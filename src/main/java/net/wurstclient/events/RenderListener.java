@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import org.lwjgl.opengl.GL11;
 
 import net.minecraft.client.util.math.MatrixStack;
@@ -31,7 +29,7 @@ public interface RenderListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<RenderListener> listeners)
+		public void fire(RenderListener[] listeners)
 		{
 			GL11.glEnable(GL11.GL_LINE_SMOOTH);
 			
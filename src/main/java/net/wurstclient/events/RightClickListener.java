@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
 
@@ -20,7 +18,7 @@ public interface RightClickListener extends Listener
 		extends CancellableEvent<RightClickListener>
 	{
 		@Override
-		public void fire(ArrayList<RightClickListener> listeners)
+		public void fire(RightClickListener[] listeners)
 		{
 			for(RightClickListener listener : listeners)
 			{
@@ -7,11 +7,12 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.CancellableEvent;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.CHUNK_BUILDER)
 public interface SetOpaqueCubeListener extends Listener
 {
 	public void onSetOpaqueCube(SetOpaqueCubeEvent event);
@@ -20,7 +21,7 @@ public interface SetOpaqueCubeListener extends Listener
 		extends CancellableEvent<SetOpaqueCubeListener>
 	{
 		@Override
-		public void fire(ArrayList<SetOpaqueCubeListener> listeners)
+		public void fire(SetOpaqueCubeListener[] listeners)
 		{
 			for(SetOpaqueCubeListener listener : listeners)
 			{
@@ -7,13 +7,14 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.wurstclient.event.Event;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.CHUNK_BUILDER)
 public interface ShouldDrawSideListener extends Listener
 {
 	public void onShouldDrawSide(ShouldDrawSideEvent event);
@@ -21,8 +22,11 @@ public interface ShouldDrawSideListener extends Listener
 	public static class ShouldDrawSideEvent
 		extends Event<ShouldDrawSideListener>
 	{
-		private final BlockState state;
-		private final BlockPos pos;
+		private static final ThreadLocal<ShouldDrawSideEvent> REUSABLE =
+			ThreadLocal.withInitial(() -> new ShouldDrawSideEvent(null, null));
+		
+		private BlockState state;
+		private BlockPos pos;
 		private Boolean rendered;
 		
 		public ShouldDrawSideEvent(BlockState state, BlockPos pos)
@@ -31,6 +35,20 @@ public interface ShouldDrawSideListener extends Listener
 			this.pos = pos;
 		}
 		
+		/**
+		 * Returns the current thread's instance of this event, reset to the
+		 * given block. The returned event must not be used anymore once this
+		 * method is called again on the same thread.
+		 */
+		public static ShouldDrawSideEvent reuse(BlockState state, BlockPos pos)
+		{
+			ShouldDrawSideEvent event = REUSABLE.get();
+			event.state = state;
+			event.pos = pos;
+			event.rendered = null;
+			return event;
+		}
+		
 		public BlockState getState()
 		{
 			return state;
@@ -52,7 +70,7 @@ public interface ShouldDrawSideListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<ShouldDrawSideListener> listeners)
+		public void fire(ShouldDrawSideListener[] listeners)
 		{
 			for(ShouldDrawSideListener listener : listeners)
 				listener.onShouldDrawSide(this);
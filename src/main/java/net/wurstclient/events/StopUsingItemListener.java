@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -22,7 +20,7 @@ public interface StopUsingItemListener extends Listener
 			new StopUsingItemEvent();
 		
 		@Override
-		public void fire(ArrayList<StopUsingItemListener> listeners)
+		public void fire(StopUsingItemListener[] listeners)
 		{
 			for(StopUsingItemListener listener : listeners)
 				listener.onStopUsingItem();
@@ -7,13 +7,14 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.wurstclient.event.CancellableEvent;
+import net.wurstclient.event.EventThread;
+import net.wurstclient.event.FiredOn;
 import net.wurstclient.event.Listener;
 
+@FiredOn(EventThread.CHUNK_BUILDER)
 public interface TesselateBlockListener extends Listener
 {
 	public void onTesselateBlock(TesselateBlockEvent event);
@@ -21,8 +22,11 @@ public interface TesselateBlockListener extends Listener
 	public static class TesselateBlockEvent
 		extends CancellableEvent<TesselateBlockListener>
 	{
-		private final BlockState state;
-		private final BlockPos pos;
+		private static final ThreadLocal<TesselateBlockEvent> REUSABLE =
+			ThreadLocal.withInitial(() -> new TesselateBlockEvent(null, null));
+		
+		private BlockState state;
+		private BlockPos pos;
 		
 		public TesselateBlockEvent(BlockState state, BlockPos pos)
 		{
@@ -30,6 +34,20 @@ public interface TesselateBlockListener extends Listener
 			this.pos = pos;
 		}
 		
+		/**
+		 * Returns the current thread's instance of this event, reset to the
+		 * given block. The returned event must not be used anymore once this
+		 * method is called again on the same thread.
+		 */
+		public static TesselateBlockEvent reuse(BlockState state, BlockPos pos)
+		{
+			TesselateBlockEvent event = REUSABLE.get();
+			event.state = state;
+			event.pos = pos;
+			event.resetCancelled();
+			return event;
+		}
+		
 		public BlockState getState()
 		{
 			return state;
@@ -41,7 +59,7 @@ public interface TesselateBlockListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<TesselateBlockListener> listeners)
+		public void fire(TesselateBlockListener[] listeners)
 		{
 			for(TesselateBlockListener listener : listeners)
 			{
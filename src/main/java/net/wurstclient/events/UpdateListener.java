@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.wurstclient.event.Event;
 import net.wurstclient.event.Listener;
 
@@ -21,7 +19,7 @@ public interface UpdateListener extends Listener
 		public static final UpdateEvent INSTANCE = new UpdateEvent();
 		
 		@Override
-		public void fire(ArrayList<UpdateListener> listeners)
+		public void fire(UpdateListener[] listeners)
 		{
 			for(UpdateListener listener : listeners)
 				listener.onUpdate();
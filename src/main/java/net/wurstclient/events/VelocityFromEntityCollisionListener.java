@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.entity.Entity;
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
@@ -34,8 +32,7 @@ public interface VelocityFromEntityCollisionListener extends Listener
 		}
 		
 		@Override
-		public void fire(
-			ArrayList<VelocityFromEntityCollisionListener> listeners)
+		public void fire(VelocityFromEntityCollisionListener[] listeners)
 		{
 			for(VelocityFromEntityCollisionListener listener : listeners)
 			{
@@ -7,8 +7,6 @@
  */
 package net.wurstclient.events;
 
-import java.util.ArrayList;
-
 import net.minecraft.entity.Entity;
 import net.wurstclient.event.CancellableEvent;
 import net.wurstclient.event.Listener;
@@ -33,7 +31,7 @@ public interface VelocityFromFluidListener extends Listener
 		}
 		
 		@Override
-		public void fire(ArrayList<VelocityFromFluidListener> listeners)
+		public void fire(VelocityFromFluidListener[] listeners)
 		{
 			for(VelocityFromFluidListener listener : listeners)
 			{
@@ -104,7 +104,8 @@ public final class AutoFishHack extends Hack
 		shallowWaterWarning.reset();
 		
 		EVENTS.add(UpdateListener.class, this);
-		EVENTS.add(PacketInputListener.class, this);
+		EVENTS.add(PacketInputListener.class, this,
+			PlaySoundS2CPacket.class);
 		EVENTS.add(RenderListener.class, this);
 	}
 	
@@ -8,37 +8,32 @@
 package net.wurstclient.hacks;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL11;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
-import net.minecraft.client.gl.ShaderProgram;
-import net.minecraft.client.gl.VertexBuffer;
-import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.BufferBuilder.BuiltBuffer;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.client.render.GameRenderer;
-import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.render.VertexFormat;
-import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.util.math.BlockPos;
 import net.wurstclient.Category;
 import net.wurstclient.SearchTags;
+import net.wurstclient.chunk.BlockQuery;
+import net.wurstclient.chunk.ClosestBlocksFinder;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
 import net.wurstclient.settings.BlockListSetting;
+import net.wurstclient.settings.ChunkAreaSetting;
+import net.wurstclient.settings.ChunkAreaSetting.ChunkArea;
 import net.wurstclient.settings.ColorSetting;
-import net.wurstclient.util.BlockUtils;
-import net.wurstclient.util.BlockVertexCompiler;
 import net.wurstclient.util.ChatUtils;
-import net.wurstclient.util.RegionPos;
-import net.wurstclient.util.RenderUtils;
+import net.wurstclient.util.RegionVertexBuffers;
 
 @SearchTags({"base finder", "factions"})
 public final class BaseFinderHack extends Hack
@@ -92,16 +87,26 @@ public final class BaseFinderHack extends Hack
 	private final ColorSetting color = new ColorSetting("Color",
 		"Man-made blocks will be highlighted in this color.", Color.RED);
 	
-	private ArrayList<String> blockNames;
+	private final ChunkAreaSetting area = new ChunkAreaSetting("Area",
+		"The area around the player to search in.\n"
+			+ "Higher values require a faster computer.",
+		ChunkArea.A9);
 	
-	private final HashSet<BlockPos> matchingBlocks = new HashSet<>();
-	private ArrayList<int[]> vertices = new ArrayList<>();
-	private VertexBuffer vertexBuffer;
+	private static final int LIMIT = 10000;
 	
-	private int messageTimer = 0;
-	private int counter;
+	private final BlockQuery query =
+		new BlockQuery(area, this::isUnnaturalBlock);
+	private volatile BitSet blockIds;
+	private int bufferRevision;
+	private int bufferRing;
+	
+	private final RegionVertexBuffers regionBuffers =
+		new RegionVertexBuffers();
+	private Future<RegionVertexBuffers.Update> compileTask;
+	private boolean bufferUpToDate;
 	
-	private RegionPos lastRegion;
+	private boolean notify;
+	private int counter;
 	
 	public BaseFinderHack()
 	{
@@ -109,6 +114,7 @@ public final class BaseFinderHack extends Hack
 		setCategory(Category.RENDER);
 		addSetting(naturalBlocks);
 		addSetting(color);
+		addSetting(area);
 	}
 	
 	@Override
@@ -117,8 +123,8 @@ public final class BaseFinderHack extends Hack
 		String name = getName() + " [";
 		
 		// counter
-		if(counter >= 10000)
-			name += "10000+ blocks";
+		if(counter >= LIMIT)
+			name += LIMIT + "+ blocks";
 		else if(counter == 1)
 			name += "1 block";
 		else if(counter == 0)
@@ -133,10 +139,12 @@ public final class BaseFinderHack extends Hack
 	@Override
 	public void onEnable()
 	{
-		// reset timer
-		messageTimer = 0;
-		blockNames = new ArrayList<>(naturalBlocks.getBlockNames());
+		notify = true;
+		counter = 0;
+		blockIds = naturalBlocks.getStateIds();
+		bufferUpToDate = false;
 		
+		WURST.getChunkScanService().add(query);
 		EVENTS.add(UpdateListener.class, this);
 		EVENTS.add(RenderListener.class, this);
 	}
@@ -146,12 +154,15 @@ public final class BaseFinderHack extends Hack
 	{
 		EVENTS.remove(UpdateListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
-		matchingBlocks.clear();
-		vertices.clear();
-		lastRegion = null;
 		
-		if(vertexBuffer != null)
-			vertexBuffer.close();
+		if(compileTask != null)
+		{
+			compileTask.cancel(true);
+			compileTask = null;
+		}
+		
+		WURST.getChunkScanService().remove(query);
+		regionBuffers.clear();
 	}
 	
 	@Override
@@ -163,24 +174,11 @@ public final class BaseFinderHack extends Hack
 		GL11.glDisable(GL11.GL_CULL_FACE);
 		GL11.glDisable(GL11.GL_DEPTH_TEST);
 		
-		matrixStack.push();
-		RenderUtils.applyRegionalRenderOffset(matrixStack);
-		
 		float[] colorF = color.getColorF();
 		RenderSystem.setShader(GameRenderer::getPositionProgram);
 		RenderSystem.setShaderColor(colorF[0], colorF[1], colorF[2], 0.15F);
 		
-		if(vertexBuffer != null)
-		{
-			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
-			Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
-			ShaderProgram shader = RenderSystem.getShader();
-			vertexBuffer.bind();
-			vertexBuffer.draw(viewMatrix, projMatrix, shader);
-			VertexBuffer.unbind();
-		}
-		
-		matrixStack.pop();
+		regionBuffers.draw(matrixStack);
 		
 		// GL resets
 		GL11.glEnable(GL11.GL_DEPTH_TEST);
@@ -191,88 +189,75 @@ public final class BaseFinderHack extends Hack
 	@Override
 	public void onUpdate()
 	{
-		int modulo = MC.player.age % 64;
-		RegionPos region = RenderUtils.getCameraRegion();
+		// check if the block list has changed
+		if(naturalBlocks.getStateIds() != blockIds)
+		{
+			blockIds = naturalBlocks.getStateIds();
+			query.invalidate();
+		}
 		
-		if(modulo == 0 || !region.equals(lastRegion))
+		if(compileTask != null)
 		{
-			if(vertexBuffer != null)
-				vertexBuffer.close();
-			
-			vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
-			
-			Tessellator tessellator = RenderSystem.renderThreadTesselator();
-			BufferBuilder bufferBuilder = tessellator.getBuffer();
-			bufferBuilder.begin(VertexFormat.DrawMode.QUADS,
-				VertexFormats.POSITION);
-			
-			for(int[] vertex : vertices)
-				bufferBuilder.vertex(vertex[0] - region.x(), vertex[1],
-					vertex[2] - region.z()).next();
+			if(!compileTask.isDone())
+				return;
 			
-			BuiltBuffer buffer = bufferBuilder.end();
-			
-			vertexBuffer.bind();
-			vertexBuffer.upload(buffer);
-			VertexBuffer.unbind();
-			
-			lastRegion = region;
+			setBufferFromTask();
 		}
 		
-		// reset matching blocks
-		if(modulo == 0)
-			matchingBlocks.clear();
+		// same rules for rebuilding as in Search
+		if(regionBuffers.isUploading())
+			return;
+		
+		if(bufferUpToDate && (query.isComplete()
+			? bufferRevision == query.getRevision()
+			: bufferRing == query.getCompletedRing()))
+			return;
 		
-		int stepSize = MC.world.getHeight() / 64;
-		int startY = MC.world.getTopY() - 1 - modulo * stepSize;
-		int endY = startY - stepSize;
+		bufferRevision = query.getRevision();
+		bufferRing = query.getCompletedRing();
 		
-		BlockPos playerPos =
-			BlockPos.ofFloored(MC.player.getX(), 0, MC.player.getZ());
+		// update counter
+		counter = 0;
+		for(LongList blocks : query.getResults().values())
+			counter += blocks.size();
 		
-		// search matching blocks
-		loop: for(int y = startY; y > endY; y--)
-			for(int x = 64; x > -64; x--)
-				for(int z = 64; z > -64; z--)
-				{
-					if(matchingBlocks.size() >= 10000)
-						break loop;
-					
-					BlockPos pos = new BlockPos(playerPos.getX() + x, y,
-						playerPos.getZ() + z);
-					
-					if(Collections.binarySearch(blockNames,
-						BlockUtils.getName(pos)) >= 0)
-						continue;
-					
-					matchingBlocks.add(pos);
-				}
-			
-		if(modulo != 63)
-			return;
+		// show message
+		if(counter < LIMIT)
+			notify = true;
+		else if(notify)
+		{
+			ChatUtils
+				.warning("BaseFinder found \u00a7lA LOT\u00a7r of blocks.");
+			ChatUtils.message("To prevent lag, it will only show the closest "
+				+ LIMIT + " blocks.");
+			notify = false;
+		}
 		
-		// update timer
-		if(matchingBlocks.size() < 10000)
-			messageTimer--;
-		else
+		ClosestBlocksFinder finder =
+			new ClosestBlocksFinder(query, MC.player.getBlockPos(), LIMIT);
+		compileTask = WURST.getChunkScanService()
+			.submit(() -> regionBuffers.compile(finder.find()));
+	}
+	
+	private void setBufferFromTask()
+	{
+		try
 		{
-			// show message
-			if(messageTimer <= 0)
-			{
-				ChatUtils
-					.warning("BaseFinder found \u00a7lA LOT\u00a7r of blocks.");
-				ChatUtils.message(
-					"To prevent lag, it will only show the first 10000 blocks.");
-			}
+			regionBuffers.upload(compileTask.get());
+			bufferUpToDate = true;
 			
-			// reset timer
-			messageTimer = 3;
+		}catch(InterruptedException | ExecutionException e)
+		{
+			throw new RuntimeException(e);
+			
+		}finally
+		{
+			compileTask = null;
 		}
-		
-		// update counter
-		counter = matchingBlocks.size();
-		
-		// calculate vertices
-		vertices = BlockVertexCompiler.compile(matchingBlocks);
+	}
+	
+	private boolean isUnnaturalBlock(BlockState state)
+	{
+		return !blockIds.get(Block.getRawIdFromState(state));
 	}
 }
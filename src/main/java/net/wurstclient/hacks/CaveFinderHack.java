@@ -8,43 +8,27 @@
 package net.wurstclient.hacks;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
-import java.util.stream.Collectors;
 
-import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL11;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.block.Blocks;
-import net.minecraft.client.gl.ShaderProgram;
-import net.minecraft.client.gl.VertexBuffer;
-import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.BufferBuilder.BuiltBuffer;
 import net.minecraft.client.render.GameRenderer;
-import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.render.VertexFormat;
-import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
-import net.minecraft.world.chunk.Chunk;
-import net.minecraft.world.dimension.DimensionType;
 import net.wurstclient.Category;
 import net.wurstclient.SearchTags;
-import net.wurstclient.events.PacketInputListener;
+import net.wurstclient.chunk.BlockQuery;
+import net.wurstclient.chunk.ClosestBlocksFinder;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
+import net.wurstclient.settings.CheckboxSetting;
 import net.wurstclient.settings.ChunkAreaSetting;
 import net.wurstclient.settings.ColorSetting;
 import net.wurstclient.settings.SliderSetting;
@@ -53,7 +37,7 @@ import net.wurstclient.util.*;
 
 @SearchTags({"cave finder"})
 public final class CaveFinderHack extends Hack
-	implements UpdateListener, PacketInputListener, RenderListener
+	implements UpdateListener, RenderListener
 {
 	private final ChunkAreaSetting area = new ChunkAreaSetting("Area",
 		"The area around the player to search in.\n"
@@ -71,19 +55,35 @@ public final class CaveFinderHack extends Hack
 		"How opaque the highlights should be.\n" + "0 = breathing animation", 0,
 		0, 1, 0.01, ValueDisplay.PERCENTAGE.withLabel(0, "breathing"));
 	
+	private final SliderSetting minY = new SliderSetting("Min Y",
+		"Blocks below this height are not searched.", -64, -64, 320, 1,
+		ValueDisplay.INTEGER);
+	
+	private final SliderSetting maxY = new SliderSetting("Max Y",
+		"Blocks above this height are not searched.", 320, -64, 320, 1,
+		ValueDisplay.INTEGER);
+	
+	private final CheckboxSetting cacheResults = new CheckboxSetting(
+		"Cache results",
+		"Remembers the results for each server and dimension, so that"
+			+ " chunks which haven't changed don't need to be searched again"
+			+ " after rejoining or re-enabling CaveFinder.",
+		false);
+	
 	private int prevLimit;
 	private boolean notify;
 	
-	private final HashMap<ChunkPos, ChunkSearcher> searchers = new HashMap<>();
-	private final Set<ChunkPos> chunksToUpdate =
-		Collections.synchronizedSet(new HashSet<>());
-	private ExecutorService threadPool;
+	private final BlockQuery query =
+		new BlockQuery(area, state -> state.isOf(Blocks.CAVE_AIR));
+	private int bufferRevision;
+	private int bufferRing;
 	
 	private ForkJoinPool forkJoinPool;
-	private ForkJoinTask<HashSet<BlockPos>> getMatchingBlocksTask;
-	private ForkJoinTask<ArrayList<int[]>> compileVerticesTask;
+	private ForkJoinTask<LongOpenHashSet> getMatchingBlocksTask;
+	private ForkJoinTask<RegionVertexBuffers.Update> compileVerticesTask;
 	
-	private VertexBuffer vertexBuffer;
+	private final RegionVertexBuffers regionBuffers =
+		new RegionVertexBuffers();
 	private boolean bufferUpToDate;
 	
 	public CaveFinderHack()
@@ -94,6 +94,9 @@ public final class CaveFinderHack extends Hack
 		addSetting(limit);
 		addSetting(color);
 		addSetting(opacity);
+		addSetting(minY);
+		addSetting(maxY);
+		addSetting(cacheResults);
 	}
 	
 	@Override
@@ -102,13 +105,15 @@ public final class CaveFinderHack extends Hack
 		prevLimit = limit.getValueI();
 		notify = true;
 		
-		threadPool = MinPriorityThreadFactory.newFixedThreadPool();
 		forkJoinPool = new ForkJoinPool();
 		
 		bufferUpToDate = false;
 		
+		// before adding the query, so that the first searches already use
+		// the right settings
+		updateQuery();
+		WURST.getChunkScanService().add(query);
 		EVENTS.add(UpdateListener.class, this);
-		EVENTS.add(PacketInputListener.class, this);
 		EVENTS.add(RenderListener.class, this);
 	}
 	
@@ -116,80 +121,19 @@ public final class CaveFinderHack extends Hack
 	public void onDisable()
 	{
 		EVENTS.remove(UpdateListener.class, this);
-		EVENTS.remove(PacketInputListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
+		WURST.getChunkScanService().remove(query);
 		
 		stopBuildingBuffer();
-		threadPool.shutdownNow();
 		forkJoinPool.shutdownNow();
 		
-		if(vertexBuffer != null)
-			vertexBuffer.close();
-		
-		chunksToUpdate.clear();
-	}
-	
-	@Override
-	public void onReceivedPacket(PacketInputEvent event)
-	{
-		ChunkPos chunkPos = ChunkUtils.getAffectedChunk(event.getPacket());
-		
-		if(chunkPos != null)
-			chunksToUpdate.add(chunkPos);
+		regionBuffers.clear();
 	}
 	
 	@Override
 	public void onUpdate()
 	{
-		DimensionType dimension = MC.world.getDimension();
-		HashSet<ChunkPos> chunkUpdates = clearChunksToUpdate();
-		boolean searchersChanged = false;
-		
-		// remove outdated ChunkSearchers
-		for(ChunkSearcher searcher : new ArrayList<>(searchers.values()))
-		{
-			boolean remove = false;
-			ChunkPos searcherPos = searcher.getPos();
-			
-			// wrong dimension
-			if(dimension != searcher.getDimension())
-				remove = true;
-			
-			// out of range
-			else if(!area.isInRange(searcherPos))
-				remove = true;
-			
-			// chunk update
-			else if(chunkUpdates.contains(searcherPos))
-				remove = true;
-			
-			if(remove)
-			{
-				searchers.remove(searcherPos);
-				searcher.cancelSearching();
-				searchersChanged = true;
-			}
-		}
-		
-		// add new ChunkSearchers
-		for(Chunk chunk : area.getChunksInRange())
-		{
-			ChunkPos chunkPos = chunk.getPos();
-			if(searchers.containsKey(chunkPos))
-				continue;
-			
-			ChunkSearcher searcher =
-				new ChunkSearcher(chunk, Blocks.CAVE_AIR, dimension);
-			searchers.put(chunkPos, searcher);
-			searcher.startSearching(threadPool);
-			searchersChanged = true;
-		}
-		
-		if(searchersChanged)
-			stopBuildingBuffer();
-		
-		if(!areAllChunkSearchersDone())
-			return;
+		updateQuery();
 		
 		// check if limit has changed
 		if(limit.getValueI() != prevLimit)
@@ -199,10 +143,26 @@ public final class CaveFinderHack extends Hack
 			notify = true;
 		}
 		
-		// build the buffer
-		
+		// Start a new build when the results have changed, but let a running
+		// build finish first. Otherwise frequent block changes would keep
+		// cancelling it and the buffer would never be updated. While the area
+		// is still being searched, only rebuild once another ring of chunks
+		// around the player is done, so that the closest results show up
+		// first without rebuilding for every single chunk.
 		if(getMatchingBlocksTask == null)
+		{
+			if(regionBuffers.isUploading())
+				return;
+			
+			if(bufferUpToDate && (query.isComplete()
+				? bufferRevision == query.getRevision()
+				: bufferRing == query.getCompletedRing()))
+				return;
+			
+			bufferRevision = query.getRevision();
+			bufferRing = query.getCompletedRing();
 			startGetMatchingBlocksTask();
+		}
 		
 		if(!getMatchingBlocksTask.isDone())
 			return;
@@ -213,8 +173,15 @@ public final class CaveFinderHack extends Hack
 		if(!compileVerticesTask.isDone())
 			return;
 		
-		if(!bufferUpToDate)
-			setBufferFromTask();
+		setBufferFromTask();
+		getMatchingBlocksTask = null;
+		compileVerticesTask = null;
+	}
+	
+	private void updateQuery()
+	{
+		query.setYRange(minY.getValueI(), maxY.getValueI());
+		query.setCacheKey(cacheResults.isChecked() ? "cavefinder" : null);
 	}
 	
 	@Override
@@ -226,9 +193,6 @@ public final class CaveFinderHack extends Hack
 		GL11.glEnable(GL11.GL_CULL_FACE);
 		GL11.glDisable(GL11.GL_DEPTH_TEST);
 		
-		matrixStack.push();
-		RenderUtils.applyRegionalRenderOffset(matrixStack);
-		
 		// generate rainbow color
 		float x = System.currentTimeMillis() % 2000 / 1000F;
 		float alpha = 0.25F + 0.25F * MathHelper.sin(x * (float)Math.PI);
@@ -240,17 +204,7 @@ public final class CaveFinderHack extends Hack
 		RenderSystem.setShaderColor(colorF[0], colorF[1], colorF[2], alpha);
 		RenderSystem.setShader(GameRenderer::getPositionProgram);
 		
-		if(vertexBuffer != null)
-		{
-			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
-			Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
-			ShaderProgram shader = RenderSystem.getShader();
-			vertexBuffer.bind();
-			vertexBuffer.draw(viewMatrix, projMatrix, shader);
-			VertexBuffer.unbind();
-		}
-		
-		matrixStack.pop();
+		regionBuffers.draw(matrixStack);
 		
 		// GL resets
 		RenderSystem.setShaderColor(1, 1, 1, 1);
@@ -258,16 +212,6 @@ public final class CaveFinderHack extends Hack
 		GL11.glDisable(GL11.GL_BLEND);
 	}
 	
-	private HashSet<ChunkPos> clearChunksToUpdate()
-	{
-		synchronized(chunksToUpdate)
-		{
-			HashSet<ChunkPos> chunks = new HashSet<>(chunksToUpdate);
-			chunksToUpdate.clear();
-			return chunks;
-		}
-	}
-	
 	private void stopBuildingBuffer()
 	{
 		if(getMatchingBlocksTask != null)
@@ -285,30 +229,17 @@ public final class CaveFinderHack extends Hack
 		bufferUpToDate = false;
 	}
 	
-	private boolean areAllChunkSearchersDone()
-	{
-		for(ChunkSearcher searcher : searchers.values())
-			if(searcher.getStatus() != ChunkSearcher.Status.DONE)
-				return false;
-			
-		return true;
-	}
-	
 	private void startGetMatchingBlocksTask()
 	{
 		BlockPos eyesPos = BlockPos.ofFloored(RotationUtils.getEyesPos());
-		Comparator<BlockPos> comparator =
-			Comparator.comparingInt(pos -> eyesPos.getManhattanDistance(pos));
-		
-		getMatchingBlocksTask = forkJoinPool.submit(() -> searchers.values()
-			.parallelStream().flatMap(ChunkSearcher::getMatchingBlocks)
-			.sorted(comparator).limit(limit.getValueLog())
-			.collect(Collectors.toCollection(HashSet::new)));
+		ClosestBlocksFinder finder =
+			new ClosestBlocksFinder(query, eyesPos, limit.getValueLog());
+		getMatchingBlocksTask = forkJoinPool.submit(finder::find);
 	}
 	
 	private void startCompileVerticesTask()
 	{
-		HashSet<BlockPos> matchingBlocks = getMatchingBlocksTask.join();
+		LongOpenHashSet matchingBlocks = getMatchingBlocksTask.join();
 		
 		if(matchingBlocks.size() < limit.getValueLog())
 			notify = true;
@@ -320,31 +251,13 @@ public final class CaveFinderHack extends Hack
 			notify = false;
 		}
 		
-		RegionPos region = RenderUtils.getCameraRegion();
-		compileVerticesTask = forkJoinPool
-			.submit(() -> BlockVertexCompiler.compile(matchingBlocks, region));
+		compileVerticesTask =
+			forkJoinPool.submit(() -> regionBuffers.compile(matchingBlocks));
 	}
 	
 	private void setBufferFromTask()
 	{
-		Tessellator tessellator = RenderSystem.renderThreadTesselator();
-		BufferBuilder bufferBuilder = tessellator.getBuffer();
-		bufferBuilder.begin(VertexFormat.DrawMode.QUADS,
-			VertexFormats.POSITION);
-		
-		for(int[] vertex : compileVerticesTask.join())
-			bufferBuilder.vertex(vertex[0], vertex[1], vertex[2]).next();
-		
-		BuiltBuffer buffer = bufferBuilder.end();
-		
-		if(vertexBuffer != null)
-			vertexBuffer.close();
-		
-		vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
-		vertexBuffer.bind();
-		vertexBuffer.upload(buffer);
-		VertexBuffer.unbind();
-		
+		regionBuffers.upload(compileVerticesTask.join());
 		bufferUpToDate = true;
 	}
 }
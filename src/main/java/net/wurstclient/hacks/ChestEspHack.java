@@ -135,8 +135,6 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		EVENTS.add(UpdateListener.class, this);
 		EVENTS.add(CameraTransformViewBobbingListener.class, this);
 		EVENTS.add(RenderListener.class, this);
-		
-		ChestEspRenderer.prepareBuffers();
 	}
 	
 	@Override
@@ -147,7 +145,6 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		EVENTS.remove(RenderListener.class, this);
 		
 		groups.forEach(ChestEspGroup::clear);
-		ChestEspRenderer.closeBuffers();
 	}
 	
 	@Override
@@ -214,11 +211,8 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		ChestEspRenderer espRenderer = new ChestEspRenderer(matrixStack);
 		
 		if(style.getSelected().hasBoxes())
-		{
-			RenderSystem.setShader(GameRenderer::getPositionProgram);
-			groups.stream().filter(ChestEspGroup::isEnabled)
-				.forEach(espRenderer::renderBoxes);
-		}
+			espRenderer.renderBoxes(groups.stream()
+				.filter(ChestEspGroup::isEnabled).toList());
 		
 		if(style.getSelected().hasLines())
 		{
@@ -34,6 +34,7 @@ import net.wurstclient.hack.Hack;
 import net.wurstclient.settings.ColorSetting;
 import net.wurstclient.settings.EnumSetting;
 import net.wurstclient.settings.EspStyleSetting;
+import net.wurstclient.util.ColoredBox;
 import net.wurstclient.util.EntityUtils;
 import net.wurstclient.util.RegionPos;
 import net.wurstclient.util.RenderUtils;
@@ -109,7 +110,8 @@ public final class ItemEspHack extends Hack implements UpdateListener,
 		RegionPos region = RenderUtils.getCameraRegion();
 		RenderUtils.applyRegionalRenderOffset(matrixStack, region);
 		
-		renderBoxes(matrixStack, partialTicks, region);
+		if(style.getSelected().hasBoxes())
+			renderBoxes(matrixStack, partialTicks, region);
 		
 		if(style.getSelected().hasLines())
 			renderTracers(matrixStack, partialTicks, region);
@@ -126,34 +128,26 @@ public final class ItemEspHack extends Hack implements UpdateListener,
 		RegionPos region)
 	{
 		float extraSize = boxSize.getSelected().extraSize;
+		float[] colorF = color.getColorF();
+		ArrayList<ColoredBox> boxes = new ArrayList<>(items.size());
 		
 		for(ItemEntity e : items)
 		{
-			matrixStack.push();
-			
 			Vec3d lerpedPos = EntityUtils.getLerpedPos(e, partialTicks)
 				.subtract(region.toVec3d());
-			matrixStack.translate(lerpedPos.x, lerpedPos.y, lerpedPos.z);
 			
-			if(style.getSelected().hasBoxes())
-			{
-				matrixStack.push();
-				matrixStack.scale(e.getWidth() + extraSize,
-					e.getHeight() + extraSize, e.getWidth() + extraSize);
-				
-				GL11.glEnable(GL11.GL_BLEND);
-				GL11.glDisable(GL11.GL_DEPTH_TEST);
-				float[] colorF = color.getColorF();
-				RenderSystem.setShaderColor(colorF[0], colorF[1], colorF[2],
-					0.5F);
-				RenderUtils.drawOutlinedBox(new Box(-0.5, 0, -0.5, 0.5, 1, 0.5),
-					matrixStack);
-				
-				matrixStack.pop();
-			}
+			double halfWidth = (e.getWidth() + extraSize) / 2;
+			double height = e.getHeight() + extraSize;
+			Box box = new Box(lerpedPos.x - halfWidth, lerpedPos.y,
+				lerpedPos.z - halfWidth, lerpedPos.x + halfWidth,
+				lerpedPos.y + height, lerpedPos.z + halfWidth);
 			
-			matrixStack.pop();
+			boxes.add(new ColoredBox(box, colorF, 0.5F));
 		}
+		
+		GL11.glEnable(GL11.GL_BLEND);
+		GL11.glDisable(GL11.GL_DEPTH_TEST);
+		RenderUtils.drawOutlinedBoxes(boxes, matrixStack);
 	}
 	
 	private void renderTracers(MatrixStack matrixStack, float partialTicks,
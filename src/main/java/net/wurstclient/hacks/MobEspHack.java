@@ -17,8 +17,6 @@ import org.lwjgl.opengl.GL11;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
-import net.minecraft.client.gl.ShaderProgram;
-import net.minecraft.client.gl.VertexBuffer;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.GameRenderer;
 import net.minecraft.client.render.Tessellator;
@@ -38,6 +36,7 @@ import net.wurstclient.hack.Hack;
 import net.wurstclient.settings.EnumSetting;
 import net.wurstclient.settings.EspStyleSetting;
 import net.wurstclient.settings.filters.FilterInvisibleSetting;
+import net.wurstclient.util.ColoredBox;
 import net.wurstclient.util.EntityUtils;
 import net.wurstclient.util.RegionPos;
 import net.wurstclient.util.RenderUtils;
@@ -58,7 +57,6 @@ public final class MobEspHack extends Hack implements UpdateListener,
 		new FilterInvisibleSetting("Won't show invisible mobs.", false);
 	
 	private final ArrayList<MobEntity> mobs = new ArrayList<>();
-	private VertexBuffer mobBox;
 	
 	public MobEspHack()
 	{
@@ -75,10 +73,6 @@ public final class MobEspHack extends Hack implements UpdateListener,
 		EVENTS.add(UpdateListener.class, this);
 		EVENTS.add(CameraTransformViewBobbingListener.class, this);
 		EVENTS.add(RenderListener.class, this);
-		
-		mobBox = new VertexBuffer(VertexBuffer.Usage.STATIC);
-		Box bb = new Box(-0.5, 0, -0.5, 0.5, 1, 0.5);
-		RenderUtils.drawOutlinedBox(bb, mobBox);
 	}
 	
 	@Override
@@ -87,9 +81,6 @@ public final class MobEspHack extends Hack implements UpdateListener,
 		EVENTS.remove(UpdateListener.class, this);
 		EVENTS.remove(CameraTransformViewBobbingListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
-		
-		if(mobBox != null)
-			mobBox.close();
 	}
 	
 	@Override
@@ -147,31 +138,24 @@ public final class MobEspHack extends Hack implements UpdateListener,
 		RegionPos region)
 	{
 		float extraSize = boxSize.getSelected().extraSize;
-		RenderSystem.setShader(GameRenderer::getPositionProgram);
+		ArrayList<ColoredBox> boxes = new ArrayList<>(mobs.size());
 		
 		for(MobEntity e : mobs)
 		{
-			matrixStack.push();
-			
 			Vec3d lerpedPos = EntityUtils.getLerpedPos(e, partialTicks)
 				.subtract(region.toVec3d());
-			matrixStack.translate(lerpedPos.x, lerpedPos.y, lerpedPos.z);
 			
-			matrixStack.scale(e.getWidth() + extraSize,
-				e.getHeight() + extraSize, e.getWidth() + extraSize);
+			double halfWidth = (e.getWidth() + extraSize) / 2;
+			double height = e.getHeight() + extraSize;
+			Box box = new Box(lerpedPos.x - halfWidth, lerpedPos.y,
+				lerpedPos.z - halfWidth, lerpedPos.x + halfWidth,
+				lerpedPos.y + height, lerpedPos.z + halfWidth);
 			
 			float f = MC.player.distanceTo(e) / 20F;
-			RenderSystem.setShaderColor(2 - f, f, 0, 0.5F);
-			
-			ShaderProgram shader = RenderSystem.getShader();
-			Matrix4f matrix4f = RenderSystem.getProjectionMatrix();
-			mobBox.bind();
-			mobBox.draw(matrixStack.peek().getPositionMatrix(), matrix4f,
-				shader);
-			VertexBuffer.unbind();
-			
-			matrixStack.pop();
+			boxes.add(new ColoredBox(box, 2 - f, f, 0, 0.5F));
 		}
+		
+		RenderUtils.drawOutlinedBoxes(boxes, matrixStack);
 	}
 	
 	private void renderTracers(MatrixStack matrixStack, float partialTicks,
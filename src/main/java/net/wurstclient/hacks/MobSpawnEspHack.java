@@ -7,53 +7,60 @@
  */
 package net.wurstclient.hacks;
 
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.gl.ShaderProgram;
 import net.minecraft.client.gl.VertexBuffer;
-import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.BufferBuilder.BuiltBuffer;
 import net.minecraft.client.render.GameRenderer;
-import net.minecraft.client.render.Tessellator;
 import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.EntityType;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.BlockView;
 import net.minecraft.world.LightType;
 import net.minecraft.world.chunk.Chunk;
-import net.minecraft.world.dimension.DimensionType;
 import net.wurstclient.Category;
 import net.wurstclient.SearchTags;
-import net.wurstclient.events.PacketInputListener;
+import net.wurstclient.chunk.BlockQuery;
+import net.wurstclient.chunk.ChunkChange;
+import net.wurstclient.chunk.ChunkScanService;
+import net.wurstclient.chunk.ChunkSnapshot;
+import net.wurstclient.events.ChunkChangeSetListener;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
+import net.wurstclient.mixinterface.IVertexBuffer;
 import net.wurstclient.settings.CheckboxSetting;
 import net.wurstclient.settings.ChunkAreaSetting;
 import net.wurstclient.settings.ChunkAreaSetting.ChunkArea;
 import net.wurstclient.settings.SliderSetting;
 import net.wurstclient.settings.SliderSetting.ValueDisplay;
 import net.wurstclient.util.ChunkUtils;
-import net.wurstclient.util.MinPriorityThreadFactory;
 import net.wurstclient.util.RegionPos;
 import net.wurstclient.util.RenderUtils;
 
 @SearchTags({"mob spawn esp", "LightLevelESP", "light level esp",
 	"LightLevelOverlay", "light level overlay"})
 public final class MobSpawnEspHack extends Hack
-	implements UpdateListener, PacketInputListener, RenderListener
+	implements UpdateListener, ChunkChangeSetListener, RenderListener
 {
 	private final ChunkAreaSetting drawDistance =
 		new ChunkAreaSetting("Draw distance", "", ChunkArea.A9);
@@ -64,8 +71,10 @@ public final class MobSpawnEspHack extends Hack
 	private final CheckboxSetting depthTest =
 		new CheckboxSetting("Depth test", true);
 	
+	private final BlockQuery query = new BlockQuery(drawDistance,
+		MobSpawnEspHack::canSpawnIn, MobSpawnEspHack::canSpawnOnTop);
 	private final HashMap<ChunkPos, ChunkScanner> scanners = new HashMap<>();
-	private ExecutorService pool;
+	private ChunkScanService service;
 	
 	public MobSpawnEspHack()
 	{
@@ -74,15 +83,20 @@ public final class MobSpawnEspHack extends Hack
 		addSetting(drawDistance);
 		addSetting(loadingSpeed);
 		addSetting(depthTest);
+		
+		// mobs need a block to stand on, so nothing above the terrain
+		// can be a spawn spot
+		query.limitToSurface();
 	}
 	
 	@Override
 	public void onEnable()
 	{
-		pool = MinPriorityThreadFactory.newFixedThreadPool();
+		service = WURST.getChunkScanService();
+		service.add(query);
 		
 		EVENTS.add(UpdateListener.class, this);
-		EVENTS.add(PacketInputListener.class, this);
+		EVENTS.add(ChunkChangeSetListener.class, this);
 		EVENTS.add(RenderListener.class, this);
 	}
 	
@@ -90,52 +104,56 @@ public final class MobSpawnEspHack extends Hack
 	public void onDisable()
 	{
 		EVENTS.remove(UpdateListener.class, this);
-		EVENTS.remove(PacketInputListener.class, this);
+		EVENTS.remove(ChunkChangeSetListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
 		
-		for(ChunkScanner scanner : new ArrayList<>(scanners.values()))
-		{
-			scanner.reset();
-			scanners.remove(scanner.chunk.getPos());
-		}
+		scanners.values().forEach(ChunkScanner::close);
+		scanners.clear();
 		
-		pool.shutdownNow();
+		service.remove(query);
 	}
 	
 	@Override
 	public void onUpdate()
 	{
-		DimensionType dimension = MC.world.getDimension();
-		
-		// remove old scanners that are out of range
-		for(ChunkScanner scanner : new ArrayList<>(scanners.values()))
+		// remove old scanners whose chunk is out of range or is being
+		// searched again from scratch
+		for(Iterator<ChunkScanner> itr = scanners.values().iterator(); itr
+			.hasNext();)
 		{
-			if(drawDistance.isInRange(scanner.chunk.getPos())
-				&& dimension == scanner.dimension)
+			ChunkScanner scanner = itr.next();
+			if(query.getResult(scanner.chunk.getPos()) != null)
 				continue;
 			
-			scanner.reset();
-			scanners.remove(scanner.chunk.getPos());
+			scanner.close();
+			itr.remove();
 		}
 		
-		// create & start scanners for new chunks
-		for(Chunk chunk : drawDistance.getChunksInRange())
-		{
-			ChunkPos chunkPos = chunk.getPos();
-			if(scanners.containsKey(chunkPos))
-				continue;
+		// create scanners for newly searched chunks and pass any changed
+		// results on to the existing ones
+		query.getResults().forEach((chunkPos, blocks) -> {
+			ChunkScanner scanner = scanners.get(chunkPos);
+			if(scanner == null)
+			{
+				Chunk chunk = MC.world.getChunk(chunkPos.x, chunkPos.z);
+				scanner = new ChunkScanner(chunk);
+				scanners.put(chunkPos, scanner);
+			}
 			
-			ChunkScanner scanner = new ChunkScanner(chunk, dimension);
-			scanners.put(chunkPos, scanner);
-			scanner.future = pool.submit(() -> scanner.scan());
-		}
+			scanner.setBlocks(blocks);
+		});
 		
+		// scan whatever has changed since the last scan
+		for(ChunkScanner scanner : scanners.values())
+			if(scanner.needsScanning())
+				startScanning(scanner);
+			
 		// generate vertex buffers
 		ChunkPos center = MC.player.getChunkPos();
 		Comparator<ChunkScanner> c = Comparator.comparingInt(
 			s -> ChunkUtils.getManhattanDistance(center, s.chunk.getPos()));
 		List<ChunkScanner> sortedScanners = scanners.values().stream()
-			.filter(s -> s.doneScanning).filter(s -> !s.doneCompiling).sorted(c)
+			.filter(ChunkScanner::needsCompiling).sorted(c)
 			.limit(loadingSpeed.getValueI()).collect(Collectors.toList());
 		
 		for(ChunkScanner scanner : sortedScanners)
@@ -155,32 +173,83 @@ public final class MobSpawnEspHack extends Hack
 	}
 	
 	@Override
-	public void onReceivedPacket(PacketInputEvent event)
+	public void onChunkChangeSet(ChunkChangeSetEvent event)
 	{
-		ClientWorld world = MC.world;
-		if(MC.player == null || world == null)
-			return;
-		
-		ChunkPos center = ChunkUtils.getAffectedChunk(event.getPacket());
-		if(center == null)
-			return;
-		
-		ArrayList<ChunkPos> chunks = new ArrayList<>();
-		for(int x = center.x - 1; x <= center.x + 1; x++)
-			for(int z = center.z - 1; z <= center.z + 1; z++)
-				chunks.add(new ChunkPos(x, z));
+		// Changes to the spawnable blocks themselves are picked up by the
+		// query. Here, only the sections whose light may have changed are
+		// marked for their light levels to be checked again.
+		LongOpenHashSet sections = new LongOpenHashSet();
+		for(ChunkChange change : event.getChanges())
+		{
+			ChunkPos chunkPos = change.getPos();
 			
-		for(ChunkPos chunkPos : chunks)
+			// newly loaded chunks get a new scanner once they are searched
+			if(change.isFullChunk())
+			{
+				ChunkScanner scanner = scanners.remove(chunkPos);
+				if(scanner != null)
+					scanner.close();
+				continue;
+			}
+			
+			for(int sectionY : change.getChangedLightSections())
+				sections.add(
+					ChunkSectionPos.asLong(chunkPos.x, sectionY, chunkPos.z));
+			
+			// a changed block can change the light up to 15 blocks away
+			for(long block : change.getChangedBlocks())
+			{
+				int x = BlockPos.unpackLongX(block);
+				int y = BlockPos.unpackLongY(block);
+				int z = BlockPos.unpackLongZ(block);
+				
+				for(int sx = x - 15 >> 4; sx <= x + 15 >> 4; sx++)
+					for(int sy = y - 15 >> 4; sy <= y + 15 >> 4; sy++)
+						for(int sz = z - 15 >> 4; sz <= z + 15 >> 4; sz++)
+							sections.add(ChunkSectionPos.asLong(sx, sy, sz));
+			}
+		}
+		
+		for(LongIterator itr = sections.iterator(); itr.hasNext();)
 		{
-			ChunkScanner scanner = scanners.get(chunkPos);
-			if(scanner == null)
-				return;
+			long section = itr.nextLong();
+			ChunkScanner scanner =
+				scanners.get(new ChunkPos(ChunkSectionPos.unpackX(section),
+					ChunkSectionPos.unpackZ(section)));
 			
-			scanner.reset();
-			scanner.future = pool.submit(() -> scanner.scan());
+			if(scanner != null)
+				scanner.markDirty(ChunkSectionPos.unpackY(section));
 		}
 	}
 	
+	private void startScanning(ChunkScanner scanner)
+	{
+		scanner.updateSurface();
+		
+		// only the light of the spawnable blocks in the dirty sections
+		// themselves is needed
+		BitSet dirtySections = scanner.dirtySections;
+		ChunkSnapshot light = ChunkSnapshot.ofLight(MC.world, scanner.chunk,
+			dirtySections, false);
+		scanner.dirtySections = new BitSet();
+		
+		scanner.future =
+			service.submit(() -> scanner.scan(dirtySections, light));
+	}
+	
+	@SuppressWarnings("deprecation")
+	private static boolean canSpawnIn(BlockState state)
+	{
+		return !state.blocksMovement() && state.getFluidState().isEmpty();
+	}
+	
+	private static boolean canSpawnOnTop(BlockView world, BlockPos pos)
+	{
+		BlockPos down = pos.down();
+		return world.getBlockState(down).allowsSpawning(world, down,
+			EntityType.ZOMBIE);
+	}
+	
 	@Override
 	public void onRender(MatrixStack matrixStack, float partialTicks)
 	{
@@ -222,140 +291,255 @@ public final class MobSpawnEspHack extends Hack
 		GL11.glDisable(GL11.GL_BLEND);
 	}
 	
+	/**
+	 * Keeps the spawnable blocks of each section of a chunk separately from
+	 * their light levels, so that a change to either only needs the affected
+	 * sections to be checked again.
+	 */
 	private static class ChunkScanner
 	{
-		public Future<?> future;
 		private final Chunk chunk;
-		private final DimensionType dimension;
-		private final Set<BlockPos> red = new HashSet<>();
-		private final Set<BlockPos> yellow = new HashSet<>();
+		private final RegionPos region;
+		private Future<?> future;
 		private VertexBuffer vertexBuffer;
 		
-		private boolean doneScanning;
-		private boolean doneCompiling;
+		// what has changed since the last scan was started
+		private LongList blocks;
+		private LongList newBlocks;
+		private BitSet dirtySections = new BitSet();
+		
+		// the spawnable blocks in each section, only replaced on the client
+		// thread between scans
+		private LongArrayList[] surface;
 		
-		public ChunkScanner(Chunk chunk, DimensionType dimension)
+		// only used by one scan at a time: the crosses of the dark spawnable
+		// blocks in each section
+		private final float[][] sectionVertices;
+		
+		// the result of the last scan, already packed in the POSITION_COLOR
+		// layout and relative to the chunk's region, so that the render
+		// thread only has to upload it. Null if there are no crosses.
+		private ByteBuffer packed;
+		private boolean hasPacked;
+		private boolean closed;
+		
+		public ChunkScanner(Chunk chunk)
 		{
 			this.chunk = chunk;
-			this.dimension = dimension;
+			region = RegionPos.of(chunk.getPos());
+			
+			int count = chunk.countVerticalSections();
+			surface = new LongArrayList[count];
+			sectionVertices = new float[count][];
 		}
 		
-		@SuppressWarnings("deprecation")
-		private void scan()
+		private void setBlocks(LongList blocks)
 		{
-			ClientWorld world = MC.world;
-			ArrayList<BlockPos> blocks = new ArrayList<>();
+			if(blocks == this.blocks)
+				return;
 			
-			int minX = chunk.getPos().getStartX();
-			int minY = world.getBottomY();
-			int minZ = chunk.getPos().getStartZ();
-			int maxX = chunk.getPos().getEndX();
-			int maxY = world.getTopY();
-			int maxZ = chunk.getPos().getEndZ();
+			this.blocks = blocks;
+			newBlocks = blocks;
+		}
+		
+		private void markDirty(int sectionY)
+		{
+			int index = chunk.sectionCoordToIndex(sectionY);
+			if(index >= 0 && index < sectionVertices.length)
+				dirtySections.set(index);
+		}
+		
+		private boolean needsScanning()
+		{
+			if(newBlocks == null && dirtySections.isEmpty())
+				return false;
 			
-			for(int x = minX; x <= maxX; x++)
-				for(int y = minY; y <= maxY; y++)
-					for(int z = minZ; z <= maxZ; z++)
-					{
-						BlockPos pos = new BlockPos(x, y, z);
-						BlockState state = world.getBlockState(pos);
-						
-						if(state.blocksMovement())
-							continue;
-						if(!state.getFluidState().isEmpty())
-							continue;
-						
-						BlockState stateDown = world.getBlockState(pos.down());
-						if(!stateDown.allowsSpawning(world, pos.down(),
-							EntityType.ZOMBIE))
-							continue;
-						
-						blocks.add(pos);
-					}
-				
-			if(Thread.interrupted())
+			return future == null || future.isDone();
+		}
+		
+		/**
+		 * Marks the sections whose spawnable blocks have changed, so that
+		 * only their light needs to be copied for the next scan.
+		 */
+		private void updateSurface()
+		{
+			if(newBlocks == null)
 				return;
 			
-			red.addAll(blocks.stream()
-				.filter(pos -> world.getLightLevel(LightType.BLOCK, pos) < 1)
-				.filter(pos -> world.getLightLevel(LightType.SKY, pos) < 8)
-				.collect(Collectors.toList()));
+			LongArrayList[] newSurface = splitBySection(newBlocks);
+			for(int i = 0; i < newSurface.length; i++)
+				if(!Objects.equals(surface[i], newSurface[i]))
+					dirtySections.set(i);
+				
+			surface = newSurface;
+			newBlocks = null;
+		}
+		
+		private void scan(BitSet dirtySections, ChunkSnapshot light)
+		{
+			for(int i = dirtySections.nextSetBit(0); i >= 0; i =
+				dirtySections.nextSetBit(i + 1))
+			{
+				if(Thread.interrupted())
+					return;
+				
+				sectionVertices[i] =
+					surface[i] == null ? null : getCrosses(surface[i], light);
+			}
+			
+			int vertexCount = 0;
+			for(float[] section : sectionVertices)
+				if(section != null)
+					vertexCount += section.length / 4;
+				
+			ByteBuffer packed = null;
+			if(vertexCount > 0)
+			{
+				packed = MemoryUtil.memAlloc(vertexCount
+					* VertexFormats.POSITION_COLOR.getVertexSizeByte());
+				for(float[] section : sectionVertices)
+					if(section != null)
+						pack(packed, section);
+					
+				packed.flip();
+			}
+			
+			setPacked(packed);
+		}
+		
+		private static void pack(ByteBuffer packed, float[] vertices)
+		{
+			for(int i = 0; i < vertices.length; i += 4)
+			{
+				packed.putFloat(vertices[i]);
+				packed.putFloat(vertices[i + 1]);
+				packed.putFloat(vertices[i + 2]);
+				
+				// RGBA, with the green from getCrosses()
+				packed.put((byte)255);
+				packed.put((byte)(vertices[i + 3] * 255));
+				packed.put((byte)0);
+				packed.put((byte)127);
+			}
+		}
+		
+		private synchronized void setPacked(ByteBuffer packed)
+		{
+			if(this.packed != null)
+				MemoryUtil.memFree(this.packed);
+			this.packed = null;
 			
-			if(Thread.interrupted())
+			// a scan that was still running when the scanner was closed
+			if(closed)
+			{
+				if(packed != null)
+					MemoryUtil.memFree(packed);
 				return;
+			}
 			
-			yellow.addAll(blocks.stream().filter(pos -> !red.contains(pos))
-				.filter(pos -> world.getLightLevel(LightType.BLOCK, pos) < 1)
-				.collect(Collectors.toList()));
-			doneScanning = true;
+			this.packed = packed;
+			hasPacked = true;
 		}
 		
-		private void compileBuffer()
+		private LongArrayList[] splitBySection(LongList blocks)
 		{
-			RegionPos region = RenderUtils.getCameraRegion();
+			LongArrayList[] sections = new LongArrayList[surface.length];
+			for(LongIterator itr = blocks.iterator(); itr.hasNext();)
+			{
+				long pos = itr.nextLong();
+				int index = chunk.getSectionIndex(BlockPos.unpackLongY(pos));
+				if(sections[index] == null)
+					sections[index] = new LongArrayList();
+				
+				sections[index].add(pos);
+			}
 			
-			if(vertexBuffer != null)
-				vertexBuffer.close();
+			return sections;
+		}
+		
+		private float[] getCrosses(LongList blocks, ChunkSnapshot light)
+		{
+			FloatArrayList vertices = new FloatArrayList(blocks.size() * 16);
+			BlockPos.Mutable pos = new BlockPos.Mutable();
 			
-			vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
-			Tessellator tessellator = RenderSystem.renderThreadTesselator();
-			BufferBuilder bufferBuilder = tessellator.getBuffer();
+			for(LongIterator itr = blocks.iterator(); itr.hasNext();)
+			{
+				pos.set(itr.nextLong());
+				if(light.getLightLevel(LightType.BLOCK, pos) >= 1)
+					continue;
+				
+				// red if mobs can always spawn here, yellow if only at night
+				float green =
+					light.getLightLevel(LightType.SKY, pos) < 8 ? 0 : 1;
+				
+				float x = pos.getX() - region.x();
+				float y = pos.getY() + 0.01F;
+				float z = pos.getZ() - region.z();
+				
+				addVertex(vertices, x, y, z, green);
+				addVertex(vertices, x + 1, y, z + 1, green);
+				addVertex(vertices, x + 1, y, z, green);
+				addVertex(vertices, x, y, z + 1, green);
+			}
 			
-			bufferBuilder.begin(VertexFormat.DrawMode.DEBUG_LINES,
-				VertexFormats.POSITION_COLOR);
+			return vertices.toFloatArray();
+		}
+		
+		private static void addVertex(FloatArrayList vertices, float x,
+			float y, float z, float green)
+		{
+			vertices.add(x);
+			vertices.add(y);
+			vertices.add(z);
+			vertices.add(green);
+		}
+		
+		private synchronized boolean needsCompiling()
+		{
+			return hasPacked;
+		}
+		
+		private void compileBuffer()
+		{
+			ByteBuffer packed;
+			synchronized(this)
+			{
+				packed = this.packed;
+				this.packed = null;
+				hasPacked = false;
+			}
 			
-			new ArrayList<>(red).stream().filter(Objects::nonNull)
-				.map(pos -> new BlockPos(pos.getX() - region.x(), pos.getY(),
-					pos.getZ() - region.z()))
-				.forEach(pos -> {
-					bufferBuilder
-						.vertex(pos.getX(), pos.getY() + 0.01, pos.getZ())
-						.color(1, 0, 0, 0.5F).next();
-					bufferBuilder.vertex(pos.getX() + 1, pos.getY() + 0.01,
-						pos.getZ() + 1).color(1, 0, 0, 0.5F).next();
-					bufferBuilder
-						.vertex(pos.getX() + 1, pos.getY() + 0.01, pos.getZ())
-						.color(1, 0, 0, 0.5F).next();
-					bufferBuilder
-						.vertex(pos.getX(), pos.getY() + 0.01, pos.getZ() + 1)
-						.color(1, 0, 0, 0.5F).next();
-				});
+			if(vertexBuffer != null)
+				vertexBuffer.close();
+			vertexBuffer = null;
 			
-			new ArrayList<>(yellow).stream().filter(Objects::nonNull)
-				.map(pos -> new BlockPos(pos.getX() - region.x(), pos.getY(),
-					pos.getZ() - region.z()))
-				.forEach(pos -> {
-					bufferBuilder
-						.vertex(pos.getX(), pos.getY() + 0.01, pos.getZ())
-						.color(1, 1, 0, 0.5F).next();
-					bufferBuilder.vertex(pos.getX() + 1, pos.getY() + 0.01,
-						pos.getZ() + 1).color(1, 1, 0, 0.5F).next();
-					bufferBuilder
-						.vertex(pos.getX() + 1, pos.getY() + 0.01, pos.getZ())
-						.color(1, 1, 0, 0.5F).next();
-					bufferBuilder
-						.vertex(pos.getX(), pos.getY() + 0.01, pos.getZ() + 1)
-						.color(1, 1, 0, 0.5F).next();
-				});
+			if(packed == null)
+				return;
 			
-			BuiltBuffer buffer = bufferBuilder.end();
+			vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
 			vertexBuffer.bind();
-			vertexBuffer.upload(buffer);
+			((IVertexBuffer)vertexBuffer).uploadPacked(packed,
+				VertexFormats.POSITION_COLOR,
+				VertexFormat.DrawMode.DEBUG_LINES);
 			VertexBuffer.unbind();
-			
-			doneCompiling = true;
+			MemoryUtil.memFree(packed);
 		}
 		
-		private void reset()
+		private void close()
 		{
 			if(future != null)
 				future.cancel(true);
 			
-			red.clear();
-			yellow.clear();
+			synchronized(this)
+			{
+				closed = true;
+				if(packed != null)
+					MemoryUtil.memFree(packed);
+				packed = null;
+			}
 			
-			doneScanning = false;
-			doneCompiling = false;
+			if(vertexBuffer != null)
+				vertexBuffer.close();
 		}
 	}
 }
@@ -8,25 +8,31 @@
 package net.wurstclient.hacks;
 
 import java.awt.Color;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+
+import net.minecraft.block.BlockState;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.fluid.FluidState;
+import net.minecraft.util.collection.PaletteStorage;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
 import net.minecraft.world.chunk.WorldChunk;
 import net.minecraft.world.dimension.DimensionType;
 import net.wurstclient.Category;
+import net.wurstclient.chunk.ChunkSnapshot;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
-import net.wurstclient.hacks.newchunks.NewChunksChunkRenderer;
-import net.wurstclient.hacks.newchunks.NewChunksReasonsRenderer;
+import net.wurstclient.hacks.newchunks.NewChunksDatabase;
 import net.wurstclient.hacks.newchunks.NewChunksRenderer;
 import net.wurstclient.hacks.newchunks.NewChunksShowSetting;
-import net.wurstclient.hacks.newchunks.NewChunksShowSetting.Show;
 import net.wurstclient.hacks.newchunks.NewChunksStyleSetting;
 import net.wurstclient.settings.CheckboxSetting;
 import net.wurstclient.settings.ColorSetting;
@@ -34,12 +40,14 @@ import net.wurstclient.settings.SliderSetting;
 import net.wurstclient.settings.SliderSetting.ValueDisplay;
 import net.wurstclient.util.BlockUtils;
 import net.wurstclient.util.ChunkUtils;
-import net.wurstclient.util.RegionPos;
-import net.wurstclient.util.RenderUtils;
+import net.wurstclient.util.MinPriorityThreadFactory;
 
 public final class NewChunksHack extends Hack
 	implements UpdateListener, RenderListener
 {
+	// how often the database is written to disk, in ticks
+	private static final int SAVE_INTERVAL = 200;
+	
 	private final NewChunksStyleSetting style = new NewChunksStyleSetting();
 	
 	private final NewChunksShowSetting show = new NewChunksShowSetting();
@@ -71,26 +79,19 @@ public final class NewChunksHack extends Hack
 	private final CheckboxSetting logChunks = new CheckboxSetting("Log chunks",
 		"Writes to the log file when a new/old chunk is found.", false);
 	
-	private final Set<ChunkPos> newChunks =
-		Collections.synchronizedSet(new HashSet<>());
-	private final Set<ChunkPos> oldChunks =
-		Collections.synchronizedSet(new HashSet<>());
-	private final Set<ChunkPos> dontCheckAgain =
-		Collections.synchronizedSet(new HashSet<>());
-	
-	private final Set<BlockPos> newChunkReasons =
-		Collections.synchronizedSet(new HashSet<>());
-	private final Set<BlockPos> oldChunkReasons =
-		Collections.synchronizedSet(new HashSet<>());
+	private volatile NewChunksDatabase database = new NewChunksDatabase();
 	
-	private final NewChunksRenderer renderer = new NewChunksRenderer(altitude,
-		opacity, newChunksColor, oldChunksColor);
-	private final NewChunksReasonsRenderer reasonsRenderer =
-		new NewChunksReasonsRenderer(drawDistance);
+	private final NewChunksRenderer renderer = new NewChunksRenderer(
+		() -> database, altitude, opacity, newChunksColor, oldChunksColor);
 	
-	private RegionPos lastRegion;
 	private DimensionType lastDimension;
 	
+	// kept for as long as the game runs, so that closing and opening the
+	// same log always happens in order, even across disabling and enabling
+	private final ExecutorService ioPool =
+		MinPriorityThreadFactory.newSingleThreadExecutor();
+	private int ticksSinceSave;
+	
 	public NewChunksHack()
 	{
 		super("NewChunks");
@@ -117,13 +118,35 @@ public final class NewChunksHack extends Hack
 	
 	private void reset()
 	{
-		oldChunks.clear();
-		newChunks.clear();
-		dontCheckAgain.clear();
-		oldChunkReasons.clear();
-		newChunkReasons.clear();
-		lastRegion = null;
+		renderer.clear();
 		lastDimension = MC.world.getDimension();
+		
+		ioPool.execute(database::close);
+		NewChunksDatabase newDatabase = new NewChunksDatabase();
+		database = newDatabase;
+		Path folder = ChunkUtils.getDimensionFolder(
+			WURST.getWurstFolder().resolve("newchunks"));
+		ioPool.execute(
+			() -> loadDatabase(newDatabase, folder.resolve("chunks.log")));
+		ticksSinceSave = 0;
+	}
+	
+	private void loadDatabase(NewChunksDatabase newDatabase, Path file)
+	{
+		Long2ByteOpenHashMap loaded = newDatabase.open(file);
+		
+		// the dimension might have changed in the meantime
+		if(database != newDatabase)
+			return;
+		
+		for(Long2ByteMap.Entry entry : loaded.long2ByteEntrySet())
+		{
+			ChunkPos pos = new ChunkPos(entry.getLongKey());
+			if(entry.getByteValue() == NewChunksDatabase.NEW)
+				renderer.addNewChunk(pos, null);
+			else
+				renderer.addOldChunk(pos, null);
+		}
 	}
 	
 	@Override
@@ -131,7 +154,9 @@ public final class NewChunksHack extends Hack
 	{
 		EVENTS.remove(UpdateListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
-		renderer.closeBuffers();
+		renderer.clear();
+		
+		ioPool.execute(database::close);
 	}
 	
 	@Override
@@ -140,36 +165,20 @@ public final class NewChunksHack extends Hack
 		if(!showCounter.isChecked())
 			return getName();
 		
-		return String.format("%s [%d/%d]", getName(), newChunks.size(),
-			oldChunks.size());
+		return String.format("%s [%d/%d]", getName(), database.getNewCount(),
+			database.getOldCount());
 	}
 	
 	@Override
 	public void onUpdate()
 	{
-		renderer.closeBuffers();
-		
-		Show showSetting = show.getSelected();
-		int dd = drawDistance.getValueI();
-		NewChunksChunkRenderer chunkRenderer =
-			style.getSelected().getChunkRenderer();
+		renderer.update(show.getSelected(), showReasons.isChecked(),
+			style.getSelected().getChunkRenderer(), drawDistance.getValueI());
 		
-		if(showSetting.includesNew())
+		if(++ticksSinceSave >= SAVE_INTERVAL)
 		{
-			renderer.updateBuffer(0, chunkRenderer.buildBuffer(newChunks, dd));
-			
-			if(showReasons.isChecked())
-				renderer.updateBuffer(1,
-					reasonsRenderer.buildBuffer(newChunkReasons));
-		}
-		
-		if(showSetting.includesOld())
-		{
-			renderer.updateBuffer(2, chunkRenderer.buildBuffer(oldChunks, dd));
-			
-			if(showReasons.isChecked())
-				renderer.updateBuffer(3,
-					reasonsRenderer.buildBuffer(oldChunkReasons));
+			ioPool.execute(database::save);
+			ticksSinceSave = 0;
 		}
 	}
 	
@@ -179,48 +188,103 @@ public final class NewChunksHack extends Hack
 			return;
 		
 		WorldChunk chunk = MC.world.getChunk(x, z);
-		new Thread(() -> checkLoadedChunk(chunk), "NewChunks " + chunk.getPos())
-			.start();
+		if(database.get(chunk.getPos()) != 0)
+			return;
+		
+		ChunkSnapshot snapshot = ChunkSnapshot.ofBlocks(MC.world, chunk,
+			(section, minY, surfaceY) -> section
+				.hasAny(NewChunksHack::isFlowing),
+			false);
+		
+		// Shares the threads that search chunks for other hacks, so that
+		// chunk loading doesn't start two thread pools. Checks that are
+		// still queued when the database is replaced or closed aren't
+		// cancelled, but they notice and skip themselves.
+		NewChunksDatabase checkedDatabase = database;
+		WURST.getChunkScanService()
+			.submit(() -> checkLoadedChunk(snapshot, checkedDatabase));
 	}
 	
-	private void checkLoadedChunk(WorldChunk chunk)
+	private void checkLoadedChunk(ChunkSnapshot snapshot,
+		NewChunksDatabase checkedDatabase)
 	{
-		ChunkPos chunkPos = chunk.getPos();
-		if(newChunks.contains(chunkPos) || oldChunks.contains(chunkPos)
-			|| dontCheckAgain.contains(chunkPos))
+		if(database != checkedDatabase || !isEnabled())
 			return;
 		
-		int minX = chunkPos.getStartX();
-		int minY = chunk.getBottomY();
-		int minZ = chunkPos.getStartZ();
-		int maxX = chunkPos.getEndX();
-		int maxY = ChunkUtils.getHighestNonEmptySectionYOffset(chunk) + 16;
-		int maxZ = chunkPos.getEndZ();
+		ChunkPos chunkPos = snapshot.getPos();
+		if(checkedDatabase.get(chunkPos) != 0)
+			return;
+		
+		for(int i = 0; i < snapshot.countVerticalSections(); i++)
+		{
+			PalettedContainer<BlockState> section = snapshot.getSection(i);
+			if(section == null || !section.hasAny(NewChunksHack::isFlowing))
+				continue;
+			
+			int index = findFlowing(section);
+			if(index == -1)
+				continue;
+			
+			// Liquid always generates still, the flowing happens later
+			// through block updates. Therefore any chunk that contains
+			// flowing liquids from the start should be an old chunk.
+			int minY =
+				ChunkSectionPos.getBlockCoord(snapshot.sectionIndexToCoord(i));
+			if(!checkedDatabase.set(chunkPos, NewChunksDatabase.OLD))
+				return;
+			
+			BlockPos reason = new BlockPos(chunkPos.getStartX() + (index & 15),
+				minY + (index >> 8), chunkPos.getStartZ() + (index >> 4 & 15));
+			renderer.addOldChunk(chunkPos, reason);
+			if(logChunks.isChecked())
+				System.out.println("old chunk at " + chunkPos);
+			return;
+		}
 		
-		for(int x = minX; x <= maxX; x++)
-			for(int y = minY; y <= maxY; y++)
-				for(int z = minZ; z <= maxZ; z++)
-				{
-					BlockPos pos = new BlockPos(x, y, z);
-					FluidState fluidState = chunk.getFluidState(pos);
-					
-					if(fluidState.isEmpty() || fluidState.isStill())
-						continue;
-						
-					// Liquid always generates still, the flowing happens later
-					// through block updates. Therefore any chunk that contains
-					// flowing liquids from the start should be an old chunk.
-					oldChunks.add(chunkPos);
-					oldChunkReasons.add(pos);
-					if(logChunks.isChecked())
-						System.out.println("old chunk at " + chunkPos);
-					return;
-				}
-				
-		// If the whole loop ran through without finding anything, make sure it
-		// never runs again on that chunk, as that would be a huge waste of CPU
-		// time.
-		dontCheckAgain.add(chunkPos);
+		// If the whole loop ran through without finding anything, the chunk
+		// isn't remembered and gets checked again when it's loaded again.
+		// That's cheap, since the snapshot then holds no sections at all.
+	}
+	
+	/**
+	 * Goes through the packed palette indices directly, checking each
+	 * palette entry only once.
+	 *
+	 * @return the index (in YZX order) of the first flowing liquid in the
+	 *         given section, or -1 if there is none
+	 */
+	private static int findFlowing(PalettedContainer<BlockState> section)
+	{
+		PalettedContainer.Data<BlockState> data = section.data;
+		Palette<BlockState> palette = data.palette();
+		PaletteStorage storage = data.storage();
+		
+		// 0 = not checked yet, 1 = flowing, 2 = not flowing
+		byte[] flowing = new byte[Math.min(palette.getSize(), 4096)];
+		for(int index = 0; index < 4096; index++)
+		{
+			int id = storage.get(index);
+			if(id >= flowing.length)
+			{
+				if(isFlowing(palette.get(id)))
+					return index;
+				continue;
+			}
+			
+			if(flowing[id] == 0)
+				flowing[id] = isFlowing(palette.get(id)) ? (byte)1 : 2;
+			
+			if(flowing[id] == 1)
+				return index;
+		}
+		
+		return -1;
+	}
+	
+	private static boolean isFlowing(BlockState state)
+	{
+		FluidState fluidState = state.getFluidState();
+		return !fluidState.isEmpty() && !fluidState.isStill();
 	}
 	
 	public void afterUpdateBlock(BlockPos pos)
@@ -234,11 +298,10 @@ public final class NewChunksHack extends Hack
 			return;
 		
 		ChunkPos chunkPos = new ChunkPos(pos);
-		if(newChunks.contains(chunkPos) || oldChunks.contains(chunkPos))
+		if(!database.set(chunkPos, NewChunksDatabase.NEW))
 			return;
 		
-		newChunks.add(chunkPos);
-		newChunkReasons.add(pos);
+		renderer.addNewChunk(chunkPos, pos.toImmutable());
 		if(logChunks.isChecked())
 			System.out.println("new chunk at " + chunkPos);
 	}
@@ -249,13 +312,6 @@ public final class NewChunksHack extends Hack
 		if(MC.world.getDimension() != lastDimension)
 			reset();
 		
-		RegionPos region = RenderUtils.getCameraRegion();
-		if(!region.equals(lastRegion))
-		{
-			onUpdate();
-			lastRegion = region;
-		}
-		
 		renderer.render(matrixStack, partialTicks);
 	}
 }
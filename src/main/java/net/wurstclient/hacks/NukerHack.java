@@ -242,8 +242,7 @@ public final class NukerHack extends Hack
 			n -> "MultiIDNuker [" + n.multiIdList.getBlockNames().size()
 				+ (n.multiIdList.getBlockNames().size() == 1 ? " ID]"
 					: " IDs]"),
-			(n, p) -> n.multiIdList.getBlockNames()
-				.contains(BlockUtils.getName(p))),
+			(n, p) -> n.multiIdList.contains(BlockUtils.getState(p))),
 		
 		FLAT("Flat", n -> "FlatNuker",
 			(n, p) -> p.getY() >= MC.player.getPos().getY()),
@@ -249,8 +249,7 @@ public final class NukerLegitHack extends Hack
 			n -> "MultiIDNuker [" + n.multiIdList.getBlockNames().size()
 				+ (n.multiIdList.getBlockNames().size() == 1 ? " ID]"
 					: " IDs]"),
-			(n, p) -> n.multiIdList.getBlockNames()
-				.contains(BlockUtils.getName(p))),
+			(n, p) -> n.multiIdList.contains(BlockUtils.getState(p))),
 		
 		FLAT("Flat", n -> "FlatNukerLegit",
 			(n, p) -> p.getY() >= MC.player.getPos().getY()),
@@ -40,6 +40,7 @@ import net.wurstclient.settings.EspStyleSetting.EspStyle;
 import net.wurstclient.settings.filterlists.EntityFilterList;
 import net.wurstclient.settings.filters.FilterInvisibleSetting;
 import net.wurstclient.settings.filters.FilterSleepingSetting;
+import net.wurstclient.util.ColoredBox;
 import net.wurstclient.util.EntityUtils;
 import net.wurstclient.util.FakePlayerEntity;
 import net.wurstclient.util.RegionPos;
@@ -148,32 +149,30 @@ public final class PlayerEspHack extends Hack implements UpdateListener,
 		RegionPos region)
 	{
 		float extraSize = boxSize.getSelected().extraSize;
+		ArrayList<ColoredBox> boxes = new ArrayList<>(players.size());
 		
 		for(PlayerEntity e : players)
 		{
-			matrixStack.push();
-			
 			Vec3d lerpedPos = EntityUtils.getLerpedPos(e, partialTicks)
 				.subtract(region.toVec3d());
-			matrixStack.translate(lerpedPos.x, lerpedPos.y, lerpedPos.z);
 			
-			matrixStack.scale(e.getWidth() + extraSize,
-				e.getHeight() + extraSize, e.getWidth() + extraSize);
+			double halfWidth = (e.getWidth() + extraSize) / 2;
+			double height = e.getHeight() + extraSize;
+			Box box = new Box(lerpedPos.x - halfWidth, lerpedPos.y,
+				lerpedPos.z - halfWidth, lerpedPos.x + halfWidth,
+				lerpedPos.y + height, lerpedPos.z + halfWidth);
 			
 			// set color
 			if(WURST.getFriends().contains(e.getEntityName()))
-				RenderSystem.setShaderColor(0, 0, 1, 0.5F);
+				boxes.add(new ColoredBox(box, 0, 0, 1, 0.5F));
 			else
 			{
 				float f = MC.player.distanceTo(e) / 20F;
-				RenderSystem.setShaderColor(2 - f, f, 0, 0.5F);
+				boxes.add(new ColoredBox(box, 2 - f, f, 0, 0.5F));
 			}
-			
-			Box bb = new Box(-0.5, 0, -0.5, 0.5, 1, 0.5);
-			RenderUtils.drawOutlinedBox(bb, matrixStack);
-			
-			matrixStack.pop();
 		}
+		
+		RenderUtils.drawOutlinedBoxes(boxes, matrixStack);
 	}
 	
 	private void renderTracers(MatrixStack matrixStack, float partialTicks,
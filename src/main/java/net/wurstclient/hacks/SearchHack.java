@@ -7,39 +7,29 @@
  */
 package net.wurstclient.hacks;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.HexFormat;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
-import java.util.stream.Collectors;
 
 import net.wurstclient.settings.*;
-import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL11;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.block.Block;
-import net.minecraft.client.gl.ShaderProgram;
-import net.minecraft.client.gl.VertexBuffer;
-import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.BufferBuilder.BuiltBuffer;
+import net.minecraft.block.BlockState;
 import net.minecraft.client.render.GameRenderer;
-import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.render.VertexFormat;
-import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ChunkPos;
-import net.minecraft.world.chunk.Chunk;
-import net.minecraft.world.dimension.DimensionType;
+import net.minecraft.world.BlockView;
 import net.wurstclient.Category;
-import net.wurstclient.events.PacketInputListener;
+import net.wurstclient.chunk.BlockQuery;
+import net.wurstclient.chunk.ClosestBlocksFinder;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
@@ -47,7 +37,7 @@ import net.wurstclient.settings.SliderSetting.ValueDisplay;
 import net.wurstclient.util.*;
 
 public final class SearchHack extends Hack
-	implements UpdateListener, PacketInputListener, RenderListener
+	implements UpdateListener, RenderListener
 {
 
 	private final BlockListSetting blocks = new BlockListSetting("Blocks",
@@ -77,20 +67,39 @@ public final class SearchHack extends Hack
 					+ " anti-X-Ray plugins.\n\n"
 					+ "Remember to restart Search when changing this setting.",
 			false);
+	
+	private final SliderSetting minY = new SliderSetting("Min Y",
+		"Blocks below this height are not searched.", -64, -64, 320, 1,
+		ValueDisplay.INTEGER);
+	
+	private final SliderSetting maxY = new SliderSetting("Max Y",
+		"Blocks above this height are not searched.", 320, -64, 320, 1,
+		ValueDisplay.INTEGER);
+	
+	private final CheckboxSetting cacheResults = new CheckboxSetting(
+		"Cache results",
+		"Remembers the results for each server and dimension, so that"
+			+ " chunks which haven't changed don't need to be searched again"
+			+ " after rejoining or re-enabling Search.",
+		false);
 
 	private int prevLimit;
 	private boolean notify;
 	
-	private final HashMap<ChunkPos, ExposedBlockChunkSearcher> searchers = new HashMap<>();
-	private final Set<ChunkPos> chunksToUpdate =
-		Collections.synchronizedSet(new HashSet<>());
-	private ExecutorService threadPool;
+	private final BlockQuery query =
+		new BlockQuery(area, this::isWantedBlock, this::isExposedIfNeeded);
+	private volatile BitSet blockIds;
+	private volatile boolean exposedOnly;
+	private String cacheKey;
+	private int bufferRevision;
+	private int bufferRing;
 	
 	private ForkJoinPool forkJoinPool;
-	private ForkJoinTask<HashSet<BlockPos>> getMatchingBlocksTask;
-	private ForkJoinTask<ArrayList<int[]>> compileVerticesTask;
+	private ForkJoinTask<LongOpenHashSet> getMatchingBlocksTask;
+	private ForkJoinTask<RegionVertexBuffers.Update> compileVerticesTask;
 	
-	private VertexBuffer vertexBuffer;
+	private final RegionVertexBuffers regionBuffers =
+		new RegionVertexBuffers();
 	private boolean bufferUpToDate;
 	
 	public SearchHack()
@@ -101,6 +110,9 @@ public final class SearchHack extends Hack
 		addSetting(area);
 		addSetting(limit);
 		addSetting(onlyExposed);
+		addSetting(minY);
+		addSetting(maxY);
+		addSetting(cacheResults);
 	}
 	
 	@Override
@@ -116,13 +128,18 @@ public final class SearchHack extends Hack
 		prevLimit = limit.getValueI();
 		notify = true;
 		
-		threadPool = MinPriorityThreadFactory.newFixedThreadPool();
+		blockIds = blocks.getStateIds();
+		exposedOnly = onlyExposed.isChecked();
+		cacheKey = getCacheKey();
 		forkJoinPool = new ForkJoinPool();
 		
 		bufferUpToDate = false;
 		
+		// before adding the query, so that the first searches already use
+		// the right settings
+		updateQuery();
+		WURST.getChunkScanService().add(query);
 		EVENTS.add(UpdateListener.class, this);
-		EVENTS.add(PacketInputListener.class, this);
 		EVENTS.add(RenderListener.class, this);
 	}
 	
@@ -130,87 +147,27 @@ public final class SearchHack extends Hack
 	public void onDisable()
 	{
 		EVENTS.remove(UpdateListener.class, this);
-		EVENTS.remove(PacketInputListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
+		WURST.getChunkScanService().remove(query);
 		
 		stopBuildingBuffer();
-		threadPool.shutdownNow();
 		forkJoinPool.shutdownNow();
 		
-		if(vertexBuffer != null)
-		{
-			vertexBuffer.close();
-			vertexBuffer = null;
-		}
-		
-		chunksToUpdate.clear();
-	}
-	
-	@Override
-	public void onReceivedPacket(PacketInputEvent event)
-	{
-		ChunkPos chunkPos = ChunkUtils.getAffectedChunk(event.getPacket());
-		
-		if(chunkPos != null)
-			chunksToUpdate.add(chunkPos);
+		regionBuffers.clear();
 	}
 	
 	@Override
 	public void onUpdate()
 	{
-		DimensionType dimension = MC.world.getDimension();
-		HashSet<ChunkPos> chunkUpdates = clearChunksToUpdate();
-		boolean searchersChanged = false;
-		
-		// remove outdated ChunkSearchers
-		for(ExposedBlockChunkSearcher searcher : new ArrayList<>(searchers.values()))
+		// check if the block list has changed
+		if(blocks.getStateIds() != blockIds)
 		{
-			boolean remove = false;
-			ChunkPos searcherPos = searcher.getPos();
-			
-			// wrong block
-			if(!blocks.getBlockNames().equals(searcher.getBlockNames()))
-				remove = true;
-			
-			// wrong dimension
-			else if(dimension != searcher.getDimension())
-				remove = true;
-			
-			// out of range
-			else if(!area.isInRange(searcherPos))
-				remove = true;
-			
-			// chunk update
-			else if(chunkUpdates.contains(searcherPos))
-				remove = true;
-			
-			if(remove)
-			{
-				searchers.remove(searcherPos);
-				searcher.cancelSearching();
-				searchersChanged = true;
-			}
-		}
-		
-		// add new ChunkSearchers
-		for(Chunk chunk : area.getChunksInRange())
-		{
-			ChunkPos chunkPos = chunk.getPos();
-			if(searchers.containsKey(chunkPos))
-				continue;
-			
-			ExposedBlockChunkSearcher searcher =
-				new ExposedBlockChunkSearcher(chunk, blocks.getBlockNames(), dimension);
-			searchers.put(chunkPos, searcher);
-			searcher.startSearching(threadPool);
-			searchersChanged = true;
+			blockIds = blocks.getStateIds();
+			cacheKey = getCacheKey();
+			query.invalidate();
 		}
 		
-		if(searchersChanged)
-			stopBuildingBuffer();
-		
-		if(!areAllChunkSearchersDone())
-			return;
+		updateQuery();
 		
 		// check if limit has changed
 		if(limit.getValueI() != prevLimit)
@@ -220,10 +177,26 @@ public final class SearchHack extends Hack
 			notify = true;
 		}
 		
-		// build the buffer
-		
+		// Start a new build when the results have changed, but let a running
+		// build finish first. Otherwise frequent block changes would keep
+		// cancelling it and the buffer would never be updated. While the area
+		// is still being searched, only rebuild once another ring of chunks
+		// around the player is done, so that the closest results show up
+		// first without rebuilding for every single chunk.
 		if(getMatchingBlocksTask == null)
+		{
+			if(regionBuffers.isUploading())
+				return;
+			
+			if(bufferUpToDate && (query.isComplete()
+				? bufferRevision == query.getRevision()
+				: bufferRing == query.getCompletedRing()))
+				return;
+			
+			bufferRevision = query.getRevision();
+			bufferRing = query.getCompletedRing();
 			startGetMatchingBlocksTask();
+		}
 		
 		if(!getMatchingBlocksTask.isDone())
 			return;
@@ -234,8 +207,15 @@ public final class SearchHack extends Hack
 		if(!compileVerticesTask.isDone())
 			return;
 		
-		if(!bufferUpToDate)
-			setBufferFromTask();
+		setBufferFromTask();
+		getMatchingBlocksTask = null;
+		compileVerticesTask = null;
+	}
+	
+	private void updateQuery()
+	{
+		query.setYRange(minY.getValueI(), maxY.getValueI());
+		query.setCacheKey(cacheResults.isChecked() ? cacheKey : null);
 	}
 	
 	@Override
@@ -247,25 +227,12 @@ public final class SearchHack extends Hack
 		GL11.glEnable(GL11.GL_CULL_FACE);
 		GL11.glDisable(GL11.GL_DEPTH_TEST);
 		
-		matrixStack.push();
-		RenderUtils.applyRegionalRenderOffset(matrixStack);
-		
 		float[] rainbow = RenderUtils.getRainbowColor();
 		RenderSystem.setShaderColor(rainbow[0], rainbow[1], rainbow[2], 0.5F);
 		
 		RenderSystem.setShader(GameRenderer::getPositionProgram);
 		
-		if(vertexBuffer != null)
-		{
-			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
-			Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
-			ShaderProgram shader = RenderSystem.getShader();
-			vertexBuffer.bind();
-			vertexBuffer.draw(viewMatrix, projMatrix, shader);
-			VertexBuffer.unbind();
-		}
-		
-		matrixStack.pop();
+		regionBuffers.draw(matrixStack);
 		
 		// GL resets
 		RenderSystem.setShaderColor(1, 1, 1, 1);
@@ -273,16 +240,6 @@ public final class SearchHack extends Hack
 		GL11.glDisable(GL11.GL_BLEND);
 	}
 	
-	private HashSet<ChunkPos> clearChunksToUpdate()
-	{
-		synchronized(chunksToUpdate)
-		{
-			HashSet<ChunkPos> chunks = new HashSet<>(chunksToUpdate);
-			chunksToUpdate.clear();
-			return chunks;
-		}
-	}
-	
 	private void stopBuildingBuffer()
 	{
 		if(getMatchingBlocksTask != null)
@@ -296,30 +253,63 @@ public final class SearchHack extends Hack
 		bufferUpToDate = false;
 	}
 	
-	private boolean areAllChunkSearchersDone()
+	/**
+	 * Identifies the cached results by a digest of the (sorted) block names.
+	 * A plain hash code could collide and make Search show the cached results
+	 * of a different block list.
+	 */
+	private String getCacheKey()
 	{
-		for(ExposedBlockChunkSearcher searcher : searchers.values())
-			if(searcher.getStatus() != ExposedBlockChunkSearcher.Status.DONE)
-				return false;
+		try
+		{
+			String names = String.join("\n", blocks.getBlockNames());
+			byte[] digest = MessageDigest.getInstance("SHA-256")
+				.digest(names.getBytes(StandardCharsets.UTF_8));
+			
+			return "search_" + HexFormat.of().formatHex(digest, 0, 16)
+				+ (exposedOnly ? "_exposed" : "");
 			
-		return true;
+		}catch(NoSuchAlgorithmException e)
+		{
+			// every JVM has to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private boolean isWantedBlock(BlockState state)
+	{
+		return blockIds.get(Block.getRawIdFromState(state));
+	}
+	
+	private boolean isExposedIfNeeded(BlockView world, BlockPos pos)
+	{
+		if(!exposedOnly)
+			return true;
+		
+		return !isOpaqueFullCube(world, pos.up())
+			|| !isOpaqueFullCube(world, pos.down())
+			|| !isOpaqueFullCube(world, pos.east())
+			|| !isOpaqueFullCube(world, pos.west())
+			|| !isOpaqueFullCube(world, pos.north())
+			|| !isOpaqueFullCube(world, pos.south());
+	}
+	
+	private boolean isOpaqueFullCube(BlockView world, BlockPos pos)
+	{
+		return world.getBlockState(pos).isOpaqueFullCube(world, pos);
 	}
 	
 	private void startGetMatchingBlocksTask()
 	{
 		BlockPos eyesPos = BlockPos.ofFloored(RotationUtils.getEyesPos());
-		Comparator<BlockPos> comparator =
-			Comparator.comparingInt(pos -> eyesPos.getManhattanDistance(pos));
-		
-		getMatchingBlocksTask = forkJoinPool.submit(() -> searchers.values()
-			.parallelStream().flatMap(ExposedBlockChunkSearcher::getMatchingBlocks)
-			.sorted(comparator).limit(limit.getValueLog())
-			.collect(Collectors.toCollection(HashSet::new)));
+		ClosestBlocksFinder finder =
+			new ClosestBlocksFinder(query, eyesPos, limit.getValueLog());
+		getMatchingBlocksTask = forkJoinPool.submit(finder::find);
 	}
 	
 	private void startCompileVerticesTask()
 	{
-		HashSet<BlockPos> matchingBlocks = getMatchingBlocksTask.join();
+		LongOpenHashSet matchingBlocks = getMatchingBlocksTask.join();
 		
 		if(matchingBlocks.size() < limit.getValueLog())
 			notify = true;
@@ -331,31 +321,13 @@ public final class SearchHack extends Hack
 			notify = false;
 		}
 		
-		RegionPos region = RenderUtils.getCameraRegion();
-		compileVerticesTask = forkJoinPool
-			.submit(() -> BlockVertexCompiler.compile(matchingBlocks, region));
+		compileVerticesTask =
+			forkJoinPool.submit(() -> regionBuffers.compile(matchingBlocks));
 	}
 	
 	private void setBufferFromTask()
 	{
-		Tessellator tessellator = RenderSystem.renderThreadTesselator();
-		BufferBuilder bufferBuilder = tessellator.getBuffer();
-		bufferBuilder.begin(VertexFormat.DrawMode.QUADS,
-			VertexFormats.POSITION);
-		
-		for(int[] vertex : compileVerticesTask.join())
-			bufferBuilder.vertex(vertex[0], vertex[1], vertex[2]).next();
-		
-		BuiltBuffer buffer = bufferBuilder.end();
-		
-		if(vertexBuffer != null)
-			vertexBuffer.close();
-		
-		vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
-		vertexBuffer.bind();
-		vertexBuffer.upload(buffer);
-		VertexBuffer.unbind();
-		
+		regionBuffers.upload(compileVerticesTask.join());
 		bufferUpToDate = true;
 	}
 }
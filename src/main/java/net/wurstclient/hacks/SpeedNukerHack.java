@@ -193,8 +193,7 @@ public final class SpeedNukerHack extends Hack
 			n -> "MultiIDNuker [" + n.multiIdList.getBlockNames().size()
 				+ (n.multiIdList.getBlockNames().size() == 1 ? " ID]"
 					: " IDs]"),
-			(n, p) -> n.multiIdList.getBlockNames()
-				.contains(BlockUtils.getName(p))),
+			(n, p) -> n.multiIdList.contains(BlockUtils.getState(p))),
 		
 		FLAT("Flat", n -> "FlatSpeedNuker",
 			(n, pos) -> pos.getY() >= MC.player.getY()),
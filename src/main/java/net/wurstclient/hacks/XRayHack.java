@@ -7,8 +7,7 @@
  */
 package net.wurstclient.hacks;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -16,6 +15,7 @@ import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.api.ModContainer;
 import net.fabricmc.loader.api.metadata.ModMetadata;
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.util.math.BlockPos;
 import net.wurstclient.Category;
@@ -81,7 +81,7 @@ public final class XRayHack extends Hack implements UpdateListener,
 	private final String renderName =
 		Math.random() < 0.01 ? "X-Wurst" : getName();
 	
-	private ArrayList<String> oreNamesCache;
+	private BitSet oreIdsCache;
 	
 	public XRayHack()
 	{
@@ -101,8 +101,8 @@ public final class XRayHack extends Hack implements UpdateListener,
 	@Override
 	public void onEnable()
 	{
-		// cache block names in case the setting changes while X-Ray is enabled
-		oreNamesCache = new ArrayList<>(ores.getBlockNames());
+		// cache block IDs in case the setting changes while X-Ray is enabled
+		oreIdsCache = ores.getStateIds();
 		
 		// add event listeners
 		EVENTS.add(UpdateListener.class, this);
@@ -164,14 +164,13 @@ public final class XRayHack extends Hack implements UpdateListener,
 	@Override
 	public void onShouldDrawSide(ShouldDrawSideEvent event)
 	{
-		event.setRendered(
-			isVisible(event.getState().getBlock(), event.getPos()));
+		event.setRendered(isVisible(event.getState(), event.getPos()));
 	}
 	
 	@Override
 	public void onTesselateBlock(TesselateBlockEvent event)
 	{
-		if(!isVisible(event.getState().getBlock(), event.getPos()))
+		if(!isVisible(event.getState(), event.getPos()))
 			event.cancel();
 	}
 	
@@ -179,15 +178,13 @@ public final class XRayHack extends Hack implements UpdateListener,
 	public void onRenderBlockEntity(RenderBlockEntityEvent event)
 	{
 		BlockPos pos = event.getBlockEntity().getPos();
-		if(!isVisible(BlockUtils.getBlock(pos), pos))
+		if(!isVisible(BlockUtils.getState(pos), pos))
 			event.cancel();
 	}
 	
-	private boolean isVisible(Block block, BlockPos pos)
+	private boolean isVisible(BlockState state, BlockPos pos)
 	{
-		String name = BlockUtils.getName(block);
-		int index = Collections.binarySearch(oreNamesCache, name);
-		boolean visible = index >= 0;
+		boolean visible = oreIdsCache.get(Block.getRawIdFromState(state));
 		
 		if(visible && onlyExposed.isChecked())
 			return !BlockUtils.isOpaqueFullCube(pos.up())
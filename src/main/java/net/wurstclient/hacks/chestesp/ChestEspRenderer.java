@@ -7,32 +7,27 @@
  */
 package net.wurstclient.hacks.chestesp;
 
-import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.joml.Matrix4f;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
-import net.minecraft.client.gl.ShaderProgram;
-import net.minecraft.client.gl.VertexBuffer;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.Tessellator;
 import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Vec3d;
+import net.wurstclient.util.ColoredBox;
 import net.wurstclient.util.RegionPos;
 import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
 
 public final class ChestEspRenderer
 {
-	private static VertexBuffer solidBox;
-	private static VertexBuffer outlinedBox;
-	
 	private final MatrixStack matrixStack;
 	private final RegionPos region;
 	private final Vec3d start;
@@ -45,36 +40,25 @@ public final class ChestEspRenderer
 			.subtract(region.toVec3d());
 	}
 	
-	public void renderBoxes(ChestEspGroup group)
+	public void renderBoxes(List<ChestEspGroup> groups)
 	{
-		float[] colorF = group.getColorF();
+		ArrayList<ColoredBox> solidBoxes = new ArrayList<>();
+		ArrayList<ColoredBox> outlinedBoxes = new ArrayList<>();
 		
-		for(Box box : group.getBoxes())
+		for(ChestEspGroup group : groups)
 		{
-			matrixStack.push();
-			
-			matrixStack.translate(box.minX - region.x(), box.minY,
-				box.minZ - region.z());
-			
-			matrixStack.scale((float)(box.maxX - box.minX),
-				(float)(box.maxY - box.minY), (float)(box.maxZ - box.minZ));
-			
-			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
-			Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
-			ShaderProgram shader = RenderSystem.getShader();
-			
-			RenderSystem.setShaderColor(colorF[0], colorF[1], colorF[2], 0.25F);
-			solidBox.bind();
-			solidBox.draw(viewMatrix, projMatrix, shader);
-			VertexBuffer.unbind();
-			
-			RenderSystem.setShaderColor(colorF[0], colorF[1], colorF[2], 0.5F);
-			outlinedBox.bind();
-			outlinedBox.draw(viewMatrix, projMatrix, shader);
-			VertexBuffer.unbind();
+			float[] colorF = group.getColorF();
 			
-			matrixStack.pop();
+			for(Box box : group.getBoxes())
+			{
+				Box offsetBox = box.offset(-region.x(), 0, -region.z());
+				solidBoxes.add(new ColoredBox(offsetBox, colorF, 0.25F));
+				outlinedBoxes.add(new ColoredBox(offsetBox, colorF, 0.5F));
+			}
 		}
+		
+		RenderUtils.drawSolidBoxes(solidBoxes, matrixStack);
+		RenderUtils.drawOutlinedBoxes(outlinedBoxes, matrixStack);
 	}
 	
 	public void renderLines(ChestEspGroup group)
@@ -104,21 +88,4 @@ public final class ChestEspRenderer
 		
 		tessellator.draw();
 	}
-	
-	public static void prepareBuffers()
-	{
-		closeBuffers();
-		solidBox = new VertexBuffer(VertexBuffer.Usage.STATIC);
-		outlinedBox = new VertexBuffer(VertexBuffer.Usage.STATIC);
-		
-		Box box = new Box(BlockPos.ORIGIN);
-		RenderUtils.drawSolidBox(box, solidBox);
-		RenderUtils.drawOutlinedBox(box, outlinedBox);
-	}
-	
-	public static void closeBuffers()
-	{
-		Stream.of(solidBox, outlinedBox).filter(Objects::nonNull)
-			.forEach(VertexBuffer::close);
-	}
 }
@@ -7,12 +7,15 @@
  */
 package net.wurstclient.hacks.newchunks;
 
-import java.util.Set;
-
-import net.minecraft.client.render.BufferBuilder.BuiltBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.VertexFormat;
 import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.util.RegionPos;
 
 public interface NewChunksChunkRenderer
 {
-	public BuiltBuffer buildBuffer(Set<ChunkPos> chunks, int drawDistance);
+	public VertexFormat.DrawMode getDrawMode();
+	
+	public void addChunk(BufferBuilder bufferBuilder, ChunkPos chunkPos,
+		RegionPos region);
 }
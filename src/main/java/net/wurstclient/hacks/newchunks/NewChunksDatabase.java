@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.newchunks;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.util.RegionPos;
+
+/**
+ * Remembers which chunks NewChunks has found to be new or old, for one server
+ * and dimension, across sessions.
+ *
+ * <p>
+ * Chunks are kept in a primitive map from {@link ChunkPos#toLong()} to
+ * their state. Every newly classified chunk is appended to a log file,
+ * which is streamed through a fixed-size buffer and replayed when the
+ * database is opened. Chunks that were checked but turned out to be
+ * neither are not remembered at all.
+ *
+ * <p>
+ * {@link #get(ChunkPos)} and {@link #set(ChunkPos, byte)} only touch memory
+ * and can be called on any thread. All file access happens in
+ * {@link #open(Path)}, {@link #save()} and {@link #close()}, which must be
+ * called one at a time on the same IO thread and never hold the lock while
+ * reading or writing. Writing doesn't use interruptible channels, so it's
+ * safe to do on threads that might get interrupted.
+ */
+public final class NewChunksDatabase
+{
+	public static final byte NEW = 2;
+	public static final byte OLD = 3;
+	
+	private static final int MAGIC = 0x574E4331;
+	private static final int HEADER_SIZE = Integer.BYTES;
+	private static final int RECORD_SIZE = 1 + Long.BYTES;
+	private static final int BUFFER_SIZE = 4096 * RECORD_SIZE;
+	
+	private final Long2ByteOpenHashMap states = new Long2ByteOpenHashMap();
+	private int newCount;
+	private int oldCount;
+	
+	// classified since the last save()
+	private Long2ByteOpenHashMap unsaved = new Long2ByteOpenHashMap();
+	
+	// only used on the IO thread
+	private Path file;
+	private DataOutputStream log;
+	
+	/**
+	 * Loads the given log, adds its chunks to the ones that were classified
+	 * since this database was created, then continues appending to it.
+	 *
+	 * @return the chunks from the log that weren't already known
+	 */
+	public Long2ByteOpenHashMap open(Path file)
+	{
+		this.file = file;
+		Long2ByteOpenHashMap loaded = new Long2ByteOpenHashMap();
+		
+		try
+		{
+			Files.createDirectories(file.getParent());
+			int records = Files.exists(file) ? load(loaded) : 0;
+			
+			// Older logs can contain records of chunks that were only
+			// checked, and a crash can leave a partly written record at the
+			// end. Both are dropped by rewriting the log.
+			if(records - loaded.size() > Math.max(loaded.size(), 1024))
+				compact(loaded);
+			
+			openLog();
+			
+		}catch(IOException e)
+		{
+			System.out.println("Couldn't load " + file.getFileName());
+			e.printStackTrace();
+		}
+		
+		Long2ByteOpenHashMap added = new Long2ByteOpenHashMap();
+		synchronized(this)
+		{
+			for(Long2ByteMap.Entry entry : loaded.long2ByteEntrySet())
+			{
+				long pos = entry.getLongKey();
+				byte state = entry.getByteValue();
+				if(states.containsKey(pos))
+					continue;
+				
+				apply(pos, state);
+				added.put(pos, state);
+			}
+		}
+		
+		return added;
+	}
+	
+	/**
+	 * @return the number of records in the file, or
+	 *         {@link Integer#MAX_VALUE} if it's broken
+	 */
+	private int load(Long2ByteOpenHashMap loaded) throws IOException
+	{
+		try(FileChannel channel =
+			FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			if(channel.read(buffer) < HEADER_SIZE)
+				return Integer.MAX_VALUE;
+			
+			buffer.flip();
+			if(buffer.getInt() != MAGIC)
+				return Integer.MAX_VALUE;
+			
+			int count = 0;
+			boolean endOfFile = false;
+			while(!endOfFile)
+			{
+				while(buffer.remaining() >= RECORD_SIZE)
+				{
+					byte state = buffer.get();
+					long pos = buffer.getLong();
+					if(state == NEW || state == OLD)
+						loaded.put(pos, state);
+					count++;
+				}
+				
+				buffer.compact();
+				endOfFile = channel.read(buffer) == -1;
+				buffer.flip();
+			}
+			
+			return buffer.hasRemaining() ? Integer.MAX_VALUE : count;
+		}
+	}
+	
+	private void openLog() throws IOException
+	{
+		boolean empty = !Files.exists(file) || Files.size(file) == 0;
+		log = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(file.toFile(), true)));
+		
+		if(empty)
+			log.writeInt(MAGIC);
+	}
+	
+	private void compact(Long2ByteOpenHashMap loaded) throws IOException
+	{
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try(DataOutputStream out =
+			new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tempFile.toFile()))))
+		{
+			out.writeInt(MAGIC);
+			for(Long2ByteMap.Entry entry : loaded.long2ByteEntrySet())
+			{
+				out.writeByte(entry.getByteValue());
+				out.writeLong(entry.getLongKey());
+			}
+		}
+		
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * @return {@link #NEW}, {@link #OLD}, or 0 if the given chunk hasn't
+	 *         been classified yet
+	 */
+	public synchronized byte get(ChunkPos pos)
+	{
+		return states.get(pos.toLong());
+	}
+	
+	/**
+	 * Classifies the given chunk, unless it's already new or old.
+	 *
+	 * @return true if the state has changed
+	 */
+	public synchronized boolean set(ChunkPos pos, byte state)
+	{
+		long key = pos.toLong();
+		if(states.containsKey(key))
+			return false;
+		
+		apply(key, state);
+		unsaved.put(key, state);
+		return true;
+	}
+	
+	private void apply(long pos, byte state)
+	{
+		states.put(pos, state);
+		if(state == NEW)
+			newCount++;
+		else
+			oldCount++;
+	}
+	
+	/**
+	 * @return all chunks in the given region that have the given state
+	 */
+	public synchronized ArrayList<ChunkPos> getChunksIn(RegionPos region,
+		byte state)
+	{
+		ArrayList<ChunkPos> chunks = new ArrayList<>();
+		int minX = region.x() >> 4;
+		int minZ = region.z() >> 4;
+		
+		// regions are 32x32 chunks
+		for(int x = minX; x < minX + 32; x++)
+			for(int z = minZ; z < minZ + 32; z++)
+				if(states.get(ChunkPos.toLong(x, z)) == state)
+					chunks.add(new ChunkPos(x, z));
+				
+		return chunks;
+	}
+	
+	public synchronized int getNewCount()
+	{
+		return newCount;
+	}
+	
+	public synchronized int getOldCount()
+	{
+		return oldCount;
+	}
+	
+	/**
+	 * Appends the chunks that were classified since the last save to the
+	 * log. Should be called regularly on the IO thread.
+	 */
+	public void save()
+	{
+		Long2ByteOpenHashMap records;
+		synchronized(this)
+		{
+			if(unsaved.isEmpty())
+				return;
+			
+			records = unsaved;
+			unsaved = new Long2ByteOpenHashMap();
+		}
+		
+		if(log == null)
+			return;
+		
+		try
+		{
+			for(Long2ByteMap.Entry entry : records.long2ByteEntrySet())
+			{
+				log.writeByte(entry.getByteValue());
+				log.writeLong(entry.getLongKey());
+			}
+			
+			log.flush();
+			
+		}catch(IOException e)
+		{
+			System.out.println("Couldn't save " + file.getFileName());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Saves any remaining chunks and closes the log. Should be called on the
+	 * IO thread.
+	 */
+	public void close()
+	{
+		save();
+		if(log == null)
+			return;
+		
+		try
+		{
+			log.close();
+			
+		}catch(IOException e)
+		{
+			System.out.println("Couldn't save " + file.getFileName());
+			e.printStackTrace();
+		}
+		
+		log = null;
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.newchunks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import org.joml.Matrix4f;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.util.RegionPos;
+import net.wurstclient.util.RenderUtils;
+
+/**
+ * One kind of NewChunks marker (e.g. the outlines of new chunks), kept as one
+ * {@link VertexBuffer} per {@link RegionPos}.
+ *
+ * <p>
+ * New markers are added to their region's marker list, and only that
+ * region's buffer is built again from all of its markers. Moving the camera
+ * only rebuilds the regions that the edge of the draw distance passes
+ * through, and only once a marker actually enters or leaves the draw
+ * distance, since all other regions are either fully visible or fully
+ * hidden. A rebuild still starts from the region's full marker list, as a
+ * {@link VertexBuffer} can't be appended to.
+ *
+ * <p>
+ * Regions that have been out of sight for {@value #DROP_AFTER} updates are
+ * dropped along with their markers. If the layer has a source, the markers
+ * are fetched from it again once the region comes back into view.
+ * Otherwise they are forgotten, just like after rejoining.
+ */
+public final class NewChunksLayer<T>
+{
+	private static final int HIDDEN = 0;
+	private static final int PARTIAL = 1;
+	private static final int VISIBLE = 2;
+	
+	private static final int DROP_AFTER = 1200;
+	
+	private final Function<T, ChunkPos> chunkGetter;
+	private final Function<RegionPos, List<T>> source;
+	private final ConcurrentLinkedQueue<T> added =
+		new ConcurrentLinkedQueue<>();
+	private final HashMap<RegionPos, Region> regions = new HashMap<>();
+	private final HashSet<RegionPos> dropped = new HashSet<>();
+	
+	private ChunkPos lastCamChunk;
+	private int updates;
+	
+	/**
+	 * @param source
+	 *            returns all markers of the given region, including the ones
+	 *            that are still waiting in {@link #add}, or null if
+	 *            markers of dropped regions should be forgotten
+	 */
+	public NewChunksLayer(Function<T, ChunkPos> chunkGetter,
+		Function<RegionPos, List<T>> source)
+	{
+		this.chunkGetter = chunkGetter;
+		this.source = source;
+	}
+	
+	/**
+	 * Adds a marker. It will show up after the next {@link #update}. Can be
+	 * called on any thread.
+	 */
+	public void add(T marker)
+	{
+		added.add(marker);
+	}
+	
+	/**
+	 * Makes the next {@link #update} rebuild every region, e.g. because the
+	 * vertex writer or the draw distance has changed.
+	 */
+	public void invalidate()
+	{
+		for(Region region : regions.values())
+			region.dirty = true;
+	}
+	
+	/**
+	 * Rebuilds the regions that have changed since the last update.
+	 */
+	public void update(int drawDistance, VertexFormat.DrawMode drawMode,
+		VertexWriter<T> writer)
+	{
+		updates++;
+		
+		for(T marker; (marker = added.poll()) != null;)
+		{
+			// the source will return it along with the rest of the region
+			RegionPos pos = RegionPos.of(chunkGetter.apply(marker));
+			if(dropped.contains(pos))
+				continue;
+			
+			Region region = regions.computeIfAbsent(pos, Region::new);
+			region.markers.add(marker);
+			region.dirty = true;
+		}
+		
+		ChunkPos camChunk = new ChunkPos(RenderUtils.getCameraBlockPos());
+		boolean moved = !camChunk.equals(lastCamChunk);
+		lastCamChunk = camChunk;
+		
+		// bring back dropped regions that have come into view
+		for(Iterator<RegionPos> itr = dropped.iterator(); itr.hasNext();)
+		{
+			RegionPos pos = itr.next();
+			if(getVisibility(pos, camChunk, drawDistance) == HIDDEN)
+				continue;
+			
+			itr.remove();
+			Region region = new Region(pos);
+			region.markers.addAll(source.apply(pos));
+			region.dirty = true;
+			regions.put(pos, region);
+		}
+		
+		for(Iterator<Region> itr = regions.values().iterator(); itr.hasNext();)
+		{
+			Region region = itr.next();
+			int visibility = getVisibility(region.pos, camChunk, drawDistance);
+			if(visibility != HIDDEN)
+				region.lastVisible = updates;
+			else if(updates - region.lastVisible > DROP_AFTER)
+			{
+				region.close();
+				itr.remove();
+				if(source != null)
+					dropped.add(region.pos);
+				continue;
+			}
+			
+			if(!region.dirty && visibility == region.visibility
+				&& (visibility != PARTIAL || !moved
+					|| !region.hasVisibleChanges(camChunk, drawDistance)))
+				continue;
+			
+			region.rebuild(camChunk, drawDistance, visibility, drawMode,
+				writer);
+		}
+	}
+	
+	private static int getVisibility(RegionPos pos, ChunkPos camChunk,
+		int drawDistance)
+	{
+		// regions are 32x32 chunks
+		int minX = (pos.x() >> 4) - camChunk.x;
+		int minZ = (pos.z() >> 4) - camChunk.z;
+		int maxX = minX + 31;
+		int maxZ = minZ + 31;
+		
+		if(minX > drawDistance || maxX < -drawDistance || minZ > drawDistance
+			|| maxZ < -drawDistance)
+			return HIDDEN;
+		
+		if(minX >= -drawDistance && maxX <= drawDistance
+			&& minZ >= -drawDistance && maxZ <= drawDistance)
+			return VISIBLE;
+		
+		return PARTIAL;
+	}
+	
+	public void draw(MatrixStack matrixStack, double yOffset)
+	{
+		Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
+		ShaderProgram shader = RenderSystem.getShader();
+		
+		for(Region region : regions.values())
+		{
+			if(region.buffer == null)
+				continue;
+			
+			matrixStack.push();
+			RenderUtils.applyRegionalRenderOffset(matrixStack, region.pos);
+			matrixStack.translate(0, yOffset, 0);
+			
+			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
+			region.buffer.bind();
+			region.buffer.draw(viewMatrix, projMatrix, shader);
+			VertexBuffer.unbind();
+			
+			matrixStack.pop();
+		}
+	}
+	
+	/**
+	 * Removes all markers and closes all buffers.
+	 */
+	public void clear()
+	{
+		added.clear();
+		
+		regions.values().forEach(Region::close);
+		regions.clear();
+		dropped.clear();
+		lastCamChunk = null;
+	}
+	
+	@FunctionalInterface
+	public static interface VertexWriter<T>
+	{
+		/**
+		 * Writes the vertices of the given marker, relative to the given
+		 * region.
+		 */
+		public void write(BufferBuilder bufferBuilder, T marker,
+			RegionPos region);
+	}
+	
+	private final class Region
+	{
+		private final RegionPos pos;
+		private final ArrayList<T> markers = new ArrayList<>();
+		private VertexBuffer buffer;
+		private boolean dirty;
+		private int visibility = -1;
+		private ChunkPos builtCamChunk;
+		private int lastVisible = updates;
+		
+		private Region(RegionPos pos)
+		{
+			this.pos = pos;
+		}
+		
+		/**
+		 * @return true if any marker has entered or left the draw distance
+		 *         since the buffer was last built
+		 */
+		private boolean hasVisibleChanges(ChunkPos camChunk, int drawDistance)
+		{
+			for(T marker : markers)
+			{
+				ChunkPos chunk = chunkGetter.apply(marker);
+				boolean wasVisible =
+					chunk.getChebyshevDistance(builtCamChunk) <= drawDistance;
+				boolean isVisible =
+					chunk.getChebyshevDistance(camChunk) <= drawDistance;
+				if(wasVisible != isVisible)
+					return true;
+			}
+			
+			return false;
+		}
+		
+		private void rebuild(ChunkPos camChunk, int drawDistance,
+			int visibility, VertexFormat.DrawMode drawMode,
+			VertexWriter<T> writer)
+		{
+			dirty = false;
+			this.visibility = visibility;
+			builtCamChunk = camChunk;
+			
+			ArrayList<T> visible = new ArrayList<>();
+			if(visibility != HIDDEN)
+				for(T marker : markers)
+					if(chunkGetter.apply(marker)
+						.getChebyshevDistance(camChunk) <= drawDistance)
+						visible.add(marker);
+					
+			if(visible.isEmpty())
+			{
+				close();
+				return;
+			}
+			
+			Tessellator tessellator = RenderSystem.renderThreadTesselator();
+			BufferBuilder bufferBuilder = tessellator.getBuffer();
+			bufferBuilder.begin(drawMode, VertexFormats.POSITION);
+			for(T marker : visible)
+				writer.write(bufferBuilder, marker, pos);
+			
+			if(buffer == null)
+				buffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+			
+			buffer.bind();
+			buffer.upload(bufferBuilder.end());
+			VertexBuffer.unbind();
+		}
+		
+		private void close()
+		{
+			if(buffer == null)
+				return;
+			
+			buffer.close();
+			buffer = null;
+		}
+	}
+}
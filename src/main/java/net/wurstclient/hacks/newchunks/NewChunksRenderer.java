@@ -7,105 +7,180 @@
  */
 package net.wurstclient.hacks.newchunks;
 
-import org.joml.Matrix4f;
+import java.util.function.Supplier;
+
 import org.lwjgl.opengl.GL11;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
-import net.minecraft.client.gl.ShaderProgram;
-import net.minecraft.client.gl.VertexBuffer;
-import net.minecraft.client.render.BufferBuilder.BuiltBuffer;
 import net.minecraft.client.render.GameRenderer;
 import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.wurstclient.hacks.newchunks.NewChunksShowSetting.Show;
 import net.wurstclient.settings.ColorSetting;
 import net.wurstclient.settings.SliderSetting;
-import net.wurstclient.util.RenderUtils;
 
 public final class NewChunksRenderer
 {
-	private final VertexBuffer[] vertexBuffers = new VertexBuffer[4];
+	private final NewChunksLayer<ChunkPos> newChunks;
+	private final NewChunksLayer<BlockPos> newChunkReasons =
+		new NewChunksLayer<>(ChunkPos::new, null);
+	private final NewChunksLayer<ChunkPos> oldChunks;
+	private final NewChunksLayer<BlockPos> oldChunkReasons =
+		new NewChunksLayer<>(ChunkPos::new, null);
+	
+	private final NewChunksReasonsRenderer reasonsRenderer =
+		new NewChunksReasonsRenderer();
 	
 	private final SliderSetting altitude;
 	private final SliderSetting opacity;
 	private final ColorSetting newChunksColor;
 	private final ColorSetting oldChunksColor;
 	
-	public NewChunksRenderer(SliderSetting altitude, SliderSetting opacity,
+	private Show show;
+	private boolean showReasons;
+	private NewChunksChunkRenderer lastChunkRenderer;
+	private int lastDrawDistance;
+	
+	/**
+	 * @param database
+	 *            where the chunk layers get their markers back from after
+	 *            dropping regions that were out of sight for a while
+	 */
+	public NewChunksRenderer(Supplier<NewChunksDatabase> database,
+		SliderSetting altitude, SliderSetting opacity,
 		ColorSetting newChunksColor, ColorSetting oldChunksColor)
 	{
+		newChunks = new NewChunksLayer<>(pos -> pos, region -> database.get()
+			.getChunksIn(region, NewChunksDatabase.NEW));
+		oldChunks = new NewChunksLayer<>(pos -> pos, region -> database.get()
+			.getChunksIn(region, NewChunksDatabase.OLD));
 		this.altitude = altitude;
 		this.opacity = opacity;
 		this.newChunksColor = newChunksColor;
 		this.oldChunksColor = oldChunksColor;
 	}
 	
-	public void updateBuffer(int i, BuiltBuffer buffer)
+	/**
+	 * Can be called on any thread.
+	 *
+	 * @param reason
+	 *            the block that made this chunk new, or null if it's not
+	 *            known anymore
+	 */
+	public void addNewChunk(ChunkPos chunkPos, BlockPos reason)
 	{
-		vertexBuffers[i] = new VertexBuffer(VertexBuffer.Usage.STATIC);
-		vertexBuffers[i].bind();
-		vertexBuffers[i].upload(buffer);
-		VertexBuffer.unbind();
+		newChunks.add(chunkPos);
+		if(reason != null)
+			newChunkReasons.add(reason);
 	}
 	
-	public void closeBuffers()
+	/**
+	 * Can be called on any thread.
+	 *
+	 * @param reason
+	 *            the block that made this chunk old, or null if it's not
+	 *            known anymore
+	 */
+	public void addOldChunk(ChunkPos chunkPos, BlockPos reason)
 	{
-		for(int i = 0; i < vertexBuffers.length; i++)
+		oldChunks.add(chunkPos);
+		if(reason != null)
+			oldChunkReasons.add(reason);
+	}
+	
+	/**
+	 * Rebuilds whatever has changed since the last update. Layers that are
+	 * hidden are not updated until they are shown again.
+	 */
+	public void update(Show show, boolean showReasons,
+		NewChunksChunkRenderer chunkRenderer, int drawDistance)
+	{
+		this.show = show;
+		this.showReasons = showReasons;
+		
+		if(chunkRenderer != lastChunkRenderer
+			|| drawDistance != lastDrawDistance)
+		{
+			newChunks.invalidate();
+			newChunkReasons.invalidate();
+			oldChunks.invalidate();
+			oldChunkReasons.invalidate();
+			lastChunkRenderer = chunkRenderer;
+			lastDrawDistance = drawDistance;
+		}
+		
+		if(show.includesNew())
+		{
+			newChunks.update(drawDistance, chunkRenderer.getDrawMode(),
+				chunkRenderer::addChunk);
+			
+			if(showReasons)
+				newChunkReasons.update(drawDistance,
+					reasonsRenderer.getDrawMode(), reasonsRenderer::addBlock);
+		}
+		
+		if(show.includesOld())
 		{
-			if(vertexBuffers[i] == null)
-				continue;
+			oldChunks.update(drawDistance, chunkRenderer.getDrawMode(),
+				chunkRenderer::addChunk);
 			
-			vertexBuffers[i].close();
-			vertexBuffers[i] = null;
+			if(showReasons)
+				oldChunkReasons.update(drawDistance,
+					reasonsRenderer.getDrawMode(), reasonsRenderer::addBlock);
 		}
 	}
 	
+	/**
+	 * Removes all chunks and closes all buffers.
+	 */
+	public void clear()
+	{
+		newChunks.clear();
+		newChunkReasons.clear();
+		oldChunks.clear();
+		oldChunkReasons.clear();
+		lastChunkRenderer = null;
+	}
+	
 	public void render(MatrixStack matrixStack, float partialTicks)
 	{
+		if(show == null)
+			return;
+		
 		// GL settings
 		GL11.glEnable(GL11.GL_BLEND);
 		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
 		GL11.glDisable(GL11.GL_CULL_FACE);
 		GL11.glDisable(GL11.GL_DEPTH_TEST);
 		
-		matrixStack.push();
-		RenderUtils.applyRegionalRenderOffset(matrixStack);
-		
 		RenderSystem.setShader(GameRenderer::getPositionProgram);
 		
-		Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
-		ShaderProgram shader = RenderSystem.getShader();
-		
 		float alpha = opacity.getValueF();
-		float[] newColorF = newChunksColor.getColorF();
-		float[] oldColorF = oldChunksColor.getColorF();
 		double altitudeD = altitude.getValue();
 		
-		for(int i = 0; i < vertexBuffers.length; i++)
+		if(show.includesNew())
 		{
-			VertexBuffer buffer = vertexBuffers[i];
-			if(buffer == null)
-				continue;
+			float[] newColorF = newChunksColor.getColorF();
+			RenderSystem.setShaderColor(newColorF[0], newColorF[1],
+				newColorF[2], alpha);
 			
-			matrixStack.push();
-			if(i == 0 || i == 2)
-				matrixStack.translate(0, altitudeD, 0);
-			
-			if(i < 2)
-				RenderSystem.setShaderColor(newColorF[0], newColorF[1],
-					newColorF[2], alpha);
-			else
-				RenderSystem.setShaderColor(oldColorF[0], oldColorF[1],
-					oldColorF[2], alpha);
-			
-			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
-			buffer.bind();
-			buffer.draw(viewMatrix, projMatrix, shader);
-			VertexBuffer.unbind();
-			
-			matrixStack.pop();
+			newChunks.draw(matrixStack, altitudeD);
+			if(showReasons)
+				newChunkReasons.draw(matrixStack, 0);
 		}
 		
-		matrixStack.pop();
+		if(show.includesOld())
+		{
+			float[] oldColorF = oldChunksColor.getColorF();
+			RenderSystem.setShaderColor(oldColorF[0], oldColorF[1],
+				oldColorF[2], alpha);
+			
+			oldChunks.draw(matrixStack, altitudeD);
+			if(showReasons)
+				oldChunkReasons.draw(matrixStack, 0);
+		}
 		
 		// GL resets
 		RenderSystem.setShaderColor(1, 1, 1, 1);
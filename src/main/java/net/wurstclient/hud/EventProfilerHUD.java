@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hud;
+
+import java.util.List;
+
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawContext;
+import net.wurstclient.WurstClient;
+import net.wurstclient.event.EventProfiler;
+import net.wurstclient.event.EventProfiler.Report;
+
+public final class EventProfilerHUD
+{
+	private static final int MAX_LINES = 8;
+	private static final long UPDATE_INTERVAL = 1000;
+	
+	private List<Report> reports = List.of();
+	private long lastUpdate;
+	
+	public void render(DrawContext context)
+	{
+		EventProfiler profiler =
+			WurstClient.INSTANCE.getEventManager().getProfiler();
+		if(!profiler.isEnabled() || !profiler.isHudVisible())
+			return;
+		
+		// getReports() sorts every sample window, so don't call it every frame
+		long now = System.currentTimeMillis();
+		if(now - lastUpdate >= UPDATE_INTERVAL)
+		{
+			reports = profiler.getReports();
+			lastUpdate = now;
+		}
+		
+		TextRenderer tr = WurstClient.MC.textRenderer;
+		int lines = Math.min(reports.size(), MAX_LINES);
+		int posY = context.getScaledWindowHeight() - 2 - (lines + 1) * 9;
+		
+		context.drawTextWithShadow(tr, "Event profiler (p50 / p99 / max)", 2,
+			posY, 0xFFFFFF);
+		
+		for(int i = 0; i < lines; i++)
+		{
+			posY += 9;
+			context.drawTextWithShadow(tr, format(reports.get(i)), 2, posY,
+				0xC0C0C0);
+		}
+	}
+	
+	public static String format(Report report)
+	{
+		return report.listener() + " (" + report.type() + "): "
+			+ formatNanos(report.p50Nanos()) + " / "
+			+ formatNanos(report.p99Nanos()) + " / "
+			+ formatNanos(report.maxNanos());
+	}
+	
+	public static String formatNanos(long nanos)
+	{
+		if(nanos < 1_000_000)
+			return String.format("%.1f\u00b5s", nanos / 1e3);
+		
+		return String.format("%.2fms", nanos / 1e6);
+	}
+}
@@ -21,6 +21,7 @@ public final class IngameHUD implements GUIRenderListener
 {
 	private final WurstLogo wurstLogo = new WurstLogo();
 	private final HackListHUD hackList = new HackListHUD();
+	private final EventProfilerHUD eventProfiler = new EventProfilerHUD();
 	private TabGui tabGui;
 	
 	@Override
@@ -43,6 +44,7 @@ public final class IngameHUD implements GUIRenderListener
 		wurstLogo.render(context);
 		hackList.render(context, partialTicks);
 		tabGui.render(context, partialTicks);
+		eventProfiler.render(context);
 		
 		// pinned windows
 		if(!(WurstClient.MC.currentScreen instanceof ClickGuiScreen))
@@ -20,6 +20,7 @@ import net.minecraft.util.math.Direction;
 import net.minecraft.world.BlockView;
 import net.wurstclient.WurstClient;
 import net.wurstclient.event.EventManager;
+import net.wurstclient.events.ShouldDrawSideListener;
 import net.wurstclient.events.ShouldDrawSideListener.ShouldDrawSideEvent;
 import net.wurstclient.hack.HackList;
 
@@ -33,7 +34,10 @@ public abstract class BlockMixin implements ItemConvertible
 		BlockPos pos, Direction direction, BlockPos blockPos,
 		CallbackInfoReturnable<Boolean> cir)
 	{
-		ShouldDrawSideEvent event = new ShouldDrawSideEvent(state, pos);
+		if(!EventManager.hasListeners(ShouldDrawSideListener.class))
+			return;
+		
+		ShouldDrawSideEvent event = ShouldDrawSideEvent.reuse(state, pos);
 		EventManager.fire(event);
 		
 		if(event.isRendered() != null)
@@ -22,7 +22,9 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.random.Random;
 import net.minecraft.world.BlockRenderView;
 import net.wurstclient.event.EventManager;
+import net.wurstclient.events.ShouldDrawSideListener;
 import net.wurstclient.events.ShouldDrawSideListener.ShouldDrawSideEvent;
+import net.wurstclient.events.TesselateBlockListener;
 import net.wurstclient.events.TesselateBlockListener.TesselateBlockEvent;
 
 @Mixin(BlockModelRenderer.class)
@@ -38,19 +40,22 @@ public abstract class BlockModelRendererMixin
 		VertexConsumer vertexConsumer, boolean cull, Random random, long seed,
 		int overlay, CallbackInfo ci)
 	{
-		TesselateBlockEvent event = new TesselateBlockEvent(state, pos);
-		EventManager.fire(event);
-		
-		if(event.isCancelled())
+		if(EventManager.hasListeners(TesselateBlockListener.class))
 		{
-			ci.cancel();
-			return;
+			TesselateBlockEvent event = TesselateBlockEvent.reuse(state, pos);
+			EventManager.fire(event);
+			
+			if(event.isCancelled())
+			{
+				ci.cancel();
+				return;
+			}
 		}
 		
-		if(!cull)
+		if(!cull || !EventManager.hasListeners(ShouldDrawSideListener.class))
 			return;
 		
-		ShouldDrawSideEvent event2 = new ShouldDrawSideEvent(state, pos);
+		ShouldDrawSideEvent event2 = ShouldDrawSideEvent.reuse(state, pos);
 		EventManager.fire(event2);
 		if(!Boolean.TRUE.equals(event2.isRendered()))
 			return;
@@ -17,11 +17,13 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.toast.SystemToast;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.Packet;
 import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket;
 import net.minecraft.network.packet.s2c.play.ChunkData;
 import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.LightData;
 import net.minecraft.network.packet.s2c.play.ServerMetadataS2CPacket;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
@@ -38,6 +40,9 @@ public abstract class ClientPlayNetworkHandlerMixin
 	@Final
 	private MinecraftClient client;
 	
+	@Shadow
+	private ClientWorld world;
+	
 	@Inject(at = @At("HEAD"),
 		method = "sendPacket(Lnet/minecraft/network/packet/Packet;)V",
 		cancellable = true)
@@ -82,6 +87,7 @@ public abstract class ClientPlayNetworkHandlerMixin
 	private void onLoadChunk(int x, int z, ChunkData chunkData, CallbackInfo ci)
 	{
 		WurstClient.INSTANCE.getHax().newChunksHack.afterLoadChunk(x, z);
+		WurstClient.INSTANCE.getChunkChangeTracker().afterLoadChunk(x, z);
 	}
 	
 	@Inject(at = @At("TAIL"),
@@ -90,6 +96,8 @@ public abstract class ClientPlayNetworkHandlerMixin
 	{
 		WurstClient.INSTANCE.getHax().newChunksHack
 			.afterUpdateBlock(packet.getPos());
+		WurstClient.INSTANCE.getChunkChangeTracker()
+			.afterBlockUpdate(packet.getPos());
 	}
 	
 	@Inject(at = @At("TAIL"),
@@ -100,5 +108,15 @@ public abstract class ClientPlayNetworkHandlerMixin
 		packet.visitUpdates(
 			(pos, state) -> WurstClient.INSTANCE.getHax().newChunksHack
 				.afterUpdateBlock(pos));
+		WurstClient.INSTANCE.getChunkChangeTracker()
+			.afterChunkDeltaUpdate(packet);
+	}
+	
+	@Inject(at = @At("TAIL"),
+		method = "readLightData(IILnet/minecraft/network/packet/s2c/play/LightData;)V")
+	private void onReadLightData(int x, int z, LightData data, CallbackInfo ci)
+	{
+		WurstClient.INSTANCE.getChunkChangeTracker()
+			.afterLightUpdate(world, x, z, data);
 	}
 }
@@ -18,6 +18,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.BlockView;
 import net.wurstclient.event.EventManager;
+import net.wurstclient.events.ShouldDrawSideListener;
 import net.wurstclient.events.ShouldDrawSideListener.ShouldDrawSideEvent;
 
 @Mixin(FluidRenderer.class)
@@ -30,8 +31,11 @@ public class FluidRendererMixin
 		Direction direction, float maxDeviation, BlockState blockState,
 		CallbackInfoReturnable<Boolean> cir)
 	{
+		if(!EventManager.hasListeners(ShouldDrawSideListener.class))
+			return;
+		
 		BlockState state = blockView.getBlockState(blockPos);
-		ShouldDrawSideEvent event = new ShouldDrawSideEvent(state, blockPos);
+		ShouldDrawSideEvent event = ShouldDrawSideEvent.reuse(state, blockPos);
 		EventManager.fire(event);
 		
 		if(event.isRendered() != null)
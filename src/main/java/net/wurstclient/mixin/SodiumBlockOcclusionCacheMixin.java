@@ -34,8 +34,11 @@ public class SodiumBlockOcclusionCacheMixin
 	public void shouldDrawSide(BlockState state, BlockView view, BlockPos pos,
 		Direction facing, CallbackInfoReturnable<Boolean> cir)
 	{
+		if(!EventManager.hasListeners(ShouldDrawSideListener.class))
+			return;
+		
 		ShouldDrawSideListener.ShouldDrawSideEvent event =
-			new ShouldDrawSideListener.ShouldDrawSideEvent(state, pos);
+			ShouldDrawSideListener.ShouldDrawSideEvent.reuse(state, pos);
 		EventManager.fire(event);
 		
 		if(event.isRendered() != null)
@@ -18,6 +18,7 @@ import net.minecraft.client.render.model.BakedModel;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.BlockPos;
 import net.wurstclient.event.EventManager;
+import net.wurstclient.events.TesselateBlockListener;
 import net.wurstclient.events.TesselateBlockListener.TesselateBlockEvent;
 
 @Mixin(TerrainRenderContext.class)
@@ -39,8 +40,11 @@ public class TerrainRenderContextMixin
 	private void onTessellateBlock(BlockState blockState, BlockPos blockPos,
 		final BakedModel model, MatrixStack matrixStack, CallbackInfo ci)
 	{
+		if(!EventManager.hasListeners(TesselateBlockListener.class))
+			return;
+		
 		TesselateBlockEvent event =
-			new TesselateBlockEvent(blockState, blockPos);
+			TesselateBlockEvent.reuse(blockState, blockPos);
 		EventManager.fire(event);
 		
 		if(event.isCancelled())
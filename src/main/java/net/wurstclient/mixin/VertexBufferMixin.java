@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.mixin;
+
+import java.nio.ByteBuffer;
+
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL15;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.VertexFormat;
+import net.wurstclient.mixinterface.IVertexBuffer;
+
+@Mixin(VertexBuffer.class)
+public abstract class VertexBufferMixin implements AutoCloseable, IVertexBuffer
+{
+	@Shadow
+	private int vertexBufferId;
+	
+	@Shadow
+	@Nullable
+	private VertexFormat vertexFormat;
+	
+	@Shadow
+	@Nullable
+	private RenderSystem.ShapeIndexBuffer sharedSequentialIndexBuffer;
+	
+	@Shadow
+	private VertexFormat.IndexType indexType;
+	
+	@Shadow
+	private int indexCount;
+	
+	@Shadow
+	private VertexFormat.DrawMode drawMode;
+	
+	@Shadow
+	@Final
+	private VertexBuffer.Usage usage;
+	
+	/**
+	 * Does the same as {@link VertexBuffer#upload}, except that the vertices
+	 * don't have to go through a BufferBuilder first, so they can be packed
+	 * on any thread.
+	 */
+	@Override
+	public void uploadPacked(ByteBuffer vertices, VertexFormat format,
+		VertexFormat.DrawMode drawMode)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBufferId);
+		if(!format.equals(vertexFormat))
+		{
+			if(vertexFormat != null)
+				vertexFormat.clearState();
+			
+			format.setupState();
+			vertexFormat = format;
+		}
+		
+		RenderSystem.glBufferData(GL15.GL_ARRAY_BUFFER, vertices,
+			usage == VertexBuffer.Usage.STATIC ? GL15.GL_STATIC_DRAW
+				: GL15.GL_DYNAMIC_DRAW);
+		
+		int vertexCount = vertices.remaining() / format.getVertexSizeByte();
+		indexCount = drawMode.getIndexCount(vertexCount);
+		
+		RenderSystem.ShapeIndexBuffer indexBuffer =
+			RenderSystem.getSequentialBuffer(drawMode);
+		if(indexBuffer != sharedSequentialIndexBuffer
+			|| !indexBuffer.isLargeEnough(indexCount))
+			indexBuffer.bindAndGrow(indexCount);
+		
+		sharedSequentialIndexBuffer = indexBuffer;
+		indexType = indexBuffer.getIndexType();
+		this.drawMode = drawMode;
+	}
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.mixinterface;
+
+import java.nio.ByteBuffer;
+
+import net.minecraft.client.render.VertexFormat;
+
+public interface IVertexBuffer
+{
+	/**
+	 * Uploads vertices that are already packed in the given format, from the
+	 * buffer's position to its limit. Must be called on the render thread,
+	 * with this vertex buffer bound. The buffer can be freed right after.
+	 */
+	public void uploadPacked(ByteBuffer vertices, VertexFormat format,
+		VertexFormat.DrawMode drawMode);
+}
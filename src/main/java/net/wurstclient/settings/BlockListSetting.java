@@ -9,6 +9,7 @@ package net.wurstclient.settings;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -20,6 +21,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.registry.Registries;
 import net.minecraft.util.Identifier;
 import net.wurstclient.WurstClient;
@@ -35,6 +37,7 @@ public final class BlockListSetting extends Setting
 {
 	private final ArrayList<String> blockNames = new ArrayList<>();
 	private final String[] defaultNames;
+	private volatile BitSet stateIds;
 	
 	public BlockListSetting(String name, String description, String... blocks)
 	{
@@ -45,6 +48,7 @@ public final class BlockListSetting extends Setting
 			.filter(Objects::nonNull).map(BlockUtils::getName).distinct()
 			.sorted().forEachOrdered(s -> blockNames.add(s));
 		defaultNames = blockNames.toArray(new String[0]);
+		compileStateIds();
 	}
 	
 	public List<String> getBlockNames()
@@ -52,6 +56,39 @@ public final class BlockListSetting extends Setting
 		return Collections.unmodifiableList(blockNames);
 	}
 	
+	/**
+	 * Returns the raw IDs ({@link Block#getRawIdFromState(BlockState)}) of
+	 * every state of every block in this list. This is much faster to check
+	 * than the block names and can safely be read from any thread.
+	 *
+	 * <p>
+	 * The returned BitSet must not be modified. A new one is created whenever
+	 * the list changes, so comparing it by identity tells if the list has
+	 * changed.
+	 */
+	public BitSet getStateIds()
+	{
+		return stateIds;
+	}
+	
+	public boolean contains(BlockState state)
+	{
+		return stateIds.get(Block.getRawIdFromState(state));
+	}
+	
+	private void compileStateIds()
+	{
+		BitSet ids = new BitSet();
+		for(String name : blockNames)
+		{
+			Block block = BlockUtils.getBlockFromName(name);
+			for(BlockState state : block.getStateManager().getStates())
+				ids.set(Block.getRawIdFromState(state));
+		}
+		
+		stateIds = ids;
+	}
+	
 	public void add(Block block)
 	{
 		String name = BlockUtils.getName(block);
@@ -60,6 +97,7 @@ public final class BlockListSetting extends Setting
 		
 		blockNames.add(name);
 		Collections.sort(blockNames);
+		compileStateIds();
 		WurstClient.INSTANCE.saveSettings();
 	}
 	
@@ -69,6 +107,7 @@ public final class BlockListSetting extends Setting
 			return;
 		
 		blockNames.remove(index);
+		compileStateIds();
 		WurstClient.INSTANCE.saveSettings();
 	}
 	
@@ -76,6 +115,7 @@ public final class BlockListSetting extends Setting
 	{
 		blockNames.clear();
 		blockNames.addAll(Arrays.asList(defaultNames));
+		compileStateIds();
 		WurstClient.INSTANCE.saveSettings();
 	}
 	
@@ -97,6 +137,7 @@ public final class BlockListSetting extends Setting
 				.map(s -> Registries.BLOCK.get(new Identifier(s)))
 				.filter(Objects::nonNull).map(BlockUtils::getName).distinct()
 				.sorted().forEachOrdered(s -> blockNames.add(s));
+			compileStateIds();
 			
 		}catch(JsonException e)
 		{
@@ -125,6 +125,17 @@ public enum BlockUtils
 		return getState(pos).isOpaqueFullCube(MC.world, pos);
 	}
 	
+	/**
+	 * Same as {@link BlockPos#getManhattanDistance}, but for a position packed
+	 * with {@link BlockPos#asLong()}.
+	 */
+	public static int getManhattanDistance(BlockPos pos, long packedPos)
+	{
+		return Math.abs(BlockPos.unpackLongX(packedPos) - pos.getX())
+			+ Math.abs(BlockPos.unpackLongY(packedPos) - pos.getY())
+			+ Math.abs(BlockPos.unpackLongZ(packedPos) - pos.getZ());
+	}
+	
 	public static ArrayList<BlockPos> getAllInBox(BlockPos from, BlockPos to)
 	{
 		ArrayList<BlockPos> blocks = new ArrayList<>();
@@ -7,18 +7,29 @@
  */
 package net.wurstclient.util;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.Stream.Builder;
+import java.util.Arrays;
+import java.util.List;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Direction.Axis;
 import net.wurstclient.hacks.SearchHack;
 
 /**
- * Converts a {@link HashSet} of block positions into an {@link ArrayList} of
- * vertices that can be used to render those blocks.
+ * Converts a {@link LongSet} of block positions (packed with
+ * {@link BlockPos#asLong()}) into the vertices of the outer surface of those
+ * blocks, as {@code QUADS}.
+ * <p>
+ * Adjacent faces that point the same way are merged into as few rectangles
+ * as possible (greedy meshing), so large connected areas need far fewer
+ * vertices than one quad per face. The vertices are returned as one flat
+ * array of x, y, z coordinates.
  * <p>
  * Used by {@link SearchHack Search} and similar hacks.
  */
@@ -26,85 +37,181 @@ public enum BlockVertexCompiler
 {
 	;
 	
-	public static ArrayList<int[]> compile(HashSet<BlockPos> blocks)
+	/**
+	 * Compiles the blocks inside of the given region, relative to that
+	 * region. Blocks outside of it are not drawn, but still hide the faces
+	 * of their neighbors.
+	 */
+	public static int[] compile(LongSet blocks, RegionPos region)
 	{
-		return blocks.parallelStream().flatMap(pos -> getVertices(pos, blocks))
-			.collect(Collectors.toCollection(ArrayList::new));
+		List<IntArrayList> faces = Arrays.stream(Direction.values())
+			.parallel().map(face -> compileFaces(blocks, face, region))
+			.toList();
+		
+		int[] vertices =
+			new int[faces.stream().mapToInt(IntArrayList::size).sum()];
+		int offset = 0;
+		for(IntArrayList list : faces)
+		{
+			list.getElements(0, vertices, offset, list.size());
+			offset += list.size();
+		}
+		
+		return vertices;
 	}
 	
-	public static ArrayList<int[]> compile(HashSet<BlockPos> blocks,
+	private static IntArrayList compileFaces(LongSet blocks, Direction face,
 		RegionPos region)
 	{
-		return blocks.parallelStream().flatMap(pos -> getVertices(pos, blocks))
-			.map(v -> applyRegionOffset(v, region))
-			.collect(Collectors.toCollection(ArrayList::new));
-	}
-	
-	private static int[] applyRegionOffset(int[] vertex, RegionPos region)
-	{
-		vertex[0] -= region.x();
-		vertex[2] -= region.z();
-		return vertex;
-	}
-	
-	private static Stream<int[]> getVertices(BlockPos pos,
-		HashSet<BlockPos> matchingBlocks)
-	{
-		Builder<int[]> builder = Stream.<int[]> builder();
-		
-		if(!matchingBlocks.contains(pos.down()))
-		{
-			builder.accept(getVertex(pos, 0, 0, 0));
-			builder.accept(getVertex(pos, 1, 0, 0));
-			builder.accept(getVertex(pos, 1, 0, 1));
-			builder.accept(getVertex(pos, 0, 0, 1));
-		}
+		// the two axes along which faces can be merged
+		Axis normal = face.getAxis();
+		Axis u = normal == Axis.X ? Axis.Z : Axis.X;
+		Axis v = normal == Axis.Y ? Axis.Z : Axis.Y;
 		
-		if(!matchingBlocks.contains(pos.up()))
+		LongArrayList visible = new LongArrayList();
+		for(LongIterator itr = blocks.iterator(); itr.hasNext();)
 		{
-			builder.accept(getVertex(pos, 0, 1, 0));
-			builder.accept(getVertex(pos, 0, 1, 1));
-			builder.accept(getVertex(pos, 1, 1, 1));
-			builder.accept(getVertex(pos, 1, 1, 0));
+			long pos = itr.nextLong();
+			if(!isInRegion(pos, region))
+				continue;
+			
+			if(!blocks.contains(BlockPos.offset(pos, face)))
+				visible.add(pos);
 		}
 		
-		if(!matchingBlocks.contains(pos.north()))
-		{
-			builder.accept(getVertex(pos, 0, 0, 0));
-			builder.accept(getVertex(pos, 0, 1, 0));
-			builder.accept(getVertex(pos, 1, 1, 0));
-			builder.accept(getVertex(pos, 1, 0, 0));
-		}
+		// sort by plane, then row, then column, so that each rectangle
+		// starts at its lowest corner
+		long[] sorted = visible.toLongArray();
+		LongArrays.quickSort(sorted, (a, b) -> {
+			int result = Integer.compare(get(a, normal), get(b, normal));
+			if(result == 0)
+				result = Integer.compare(get(a, v), get(b, v));
+			if(result == 0)
+				result = Integer.compare(get(a, u), get(b, u));
+			return result;
+		});
 		
-		if(!matchingBlocks.contains(pos.east()))
+		LongOpenHashSet remaining = new LongOpenHashSet(sorted);
+		IntArrayList vertices = new IntArrayList();
+		for(long start : sorted)
 		{
-			builder.accept(getVertex(pos, 1, 0, 0));
-			builder.accept(getVertex(pos, 1, 1, 0));
-			builder.accept(getVertex(pos, 1, 1, 1));
-			builder.accept(getVertex(pos, 1, 0, 1));
+			if(!remaining.remove(start))
+				continue;
+			
+			int width = 1;
+			while(remaining.remove(offset(start, u, width, v, 0)))
+				width++;
+			
+			int height = 1;
+			while(isRowRemaining(remaining, start, u, width, v, height))
+			{
+				for(int i = 0; i < width; i++)
+					remaining.remove(offset(start, u, i, v, height));
+				height++;
+			}
+			
+			int x = BlockPos.unpackLongX(start) - region.x();
+			int y = BlockPos.unpackLongY(start);
+			int z = BlockPos.unpackLongZ(start) - region.z();
+			int sizeX = u == Axis.X ? width : v == Axis.X ? height : 1;
+			int sizeY = v == Axis.Y ? height : 1;
+			int sizeZ = u == Axis.Z ? width : v == Axis.Z ? height : 1;
+			addQuad(vertices, face, x, y, z, sizeX, sizeY, sizeZ);
 		}
 		
-		if(!matchingBlocks.contains(pos.south()))
-		{
-			builder.accept(getVertex(pos, 0, 0, 1));
-			builder.accept(getVertex(pos, 1, 0, 1));
-			builder.accept(getVertex(pos, 1, 1, 1));
-			builder.accept(getVertex(pos, 0, 1, 1));
-		}
+		return vertices;
+	}
+	
+	private static boolean isInRegion(long pos, RegionPos region)
+	{
+		return BlockPos.unpackLongX(pos) >> 9 << 9 == region.x()
+			&& BlockPos.unpackLongZ(pos) >> 9 << 9 == region.z();
+	}
+	
+	private static boolean isRowRemaining(LongSet remaining, long start,
+		Axis u, int width, Axis v, int row)
+	{
+		for(int i = 0; i < width; i++)
+			if(!remaining.contains(offset(start, u, i, v, row)))
+				return false;
+			
+		return true;
+	}
+	
+	private static int get(long pos, Axis axis)
+	{
+		return axis.choose(BlockPos.unpackLongX(pos),
+			BlockPos.unpackLongY(pos), BlockPos.unpackLongZ(pos));
+	}
+	
+	private static long offset(long pos, Axis u, int du, Axis v, int dv)
+	{
+		return BlockPos.add(pos, u.choose(du, 0, 0) + v.choose(dv, 0, 0),
+			u.choose(0, du, 0) + v.choose(0, dv, 0),
+			u.choose(0, 0, du) + v.choose(0, 0, dv));
+	}
+	
+	/**
+	 * Adds the face of the given box that points in the given direction.
+	 * The corners are in the same order as they would be for a single block.
+	 */
+	private static void addQuad(IntArrayList vertices, Direction face, int x,
+		int y, int z, int sizeX, int sizeY, int sizeZ)
+	{
+		int x2 = x + sizeX;
+		int y2 = y + sizeY;
+		int z2 = z + sizeZ;
 		
-		if(!matchingBlocks.contains(pos.west()))
+		switch(face)
 		{
-			builder.accept(getVertex(pos, 0, 0, 0));
-			builder.accept(getVertex(pos, 0, 0, 1));
-			builder.accept(getVertex(pos, 0, 1, 1));
-			builder.accept(getVertex(pos, 0, 1, 0));
+			case DOWN:
+			addVertex(vertices, x, y, z);
+			addVertex(vertices, x2, y, z);
+			addVertex(vertices, x2, y, z2);
+			addVertex(vertices, x, y, z2);
+			break;
+			
+			case UP:
+			addVertex(vertices, x, y2, z);
+			addVertex(vertices, x, y2, z2);
+			addVertex(vertices, x2, y2, z2);
+			addVertex(vertices, x2, y2, z);
+			break;
+			
+			case NORTH:
+			addVertex(vertices, x, y, z);
+			addVertex(vertices, x, y2, z);
+			addVertex(vertices, x2, y2, z);
+			addVertex(vertices, x2, y, z);
+			break;
+			
+			case EAST:
+			addVertex(vertices, x2, y, z);
+			addVertex(vertices, x2, y2, z);
+			addVertex(vertices, x2, y2, z2);
+			addVertex(vertices, x2, y, z2);
+			break;
+			
+			case SOUTH:
+			addVertex(vertices, x, y, z2);
+			addVertex(vertices, x2, y, z2);
+			addVertex(vertices, x2, y2, z2);
+			addVertex(vertices, x, y2, z2);
+			break;
+			
+			case WEST:
+			addVertex(vertices, x, y, z);
+			addVertex(vertices, x, y, z2);
+			addVertex(vertices, x, y2, z2);
+			addVertex(vertices, x, y2, z);
+			break;
 		}
-		
-		return builder.build();
 	}
 	
-	private static int[] getVertex(BlockPos pos, int x, int y, int z)
+	private static void addVertex(IntArrayList vertices, int x, int y, int z)
 	{
-		return new int[]{pos.getX() + x, pos.getY() + y, pos.getZ() + z};
+		vertices.add(x);
+		vertices.add(y);
+		vertices.add(z);
 	}
 }
@@ -7,11 +7,13 @@
  */
 package net.wurstclient.util;
 
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.stream.Stream;
 
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
 import net.minecraft.network.packet.Packet;
 import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket;
 import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
@@ -28,12 +30,49 @@ public enum ChunkUtils
 	
 	private static final MinecraftClient MC = WurstClient.MC;
 	
+	/**
+	 * The packet classes that {@link #getAffectedChunk(Packet)} understands,
+	 * for subscribing to them in
+	 * {@link net.wurstclient.events.PacketInputListener}.
+	 */
+	public static final Class<?>[] CHUNK_UPDATE_PACKETS =
+		{BlockUpdateS2CPacket.class, ChunkDeltaUpdateS2CPacket.class,
+			ChunkDataS2CPacket.class};
+	
 	public static Stream<BlockEntity> getLoadedBlockEntities()
 	{
 		return getLoadedChunks()
 			.flatMap(chunk -> chunk.getBlockEntities().values().stream());
 	}
 	
+	/**
+	 * Returns a folder inside the given one that is unique to the current
+	 * server (or singleplayer world) and dimension, for storing information
+	 * about their chunks. The folder is not created.
+	 */
+	public static Path getDimensionFolder(Path parent)
+	{
+		String serverName;
+		ServerInfo server = MC.getCurrentServerEntry();
+		if(server != null)
+			serverName = server.address;
+		else if(MC.isInSingleplayer())
+			serverName = "singleplayer_"
+				+ MC.getServer().getSaveProperties().getLevelName();
+		else
+			serverName = "unknown";
+		
+		String dimensionName =
+			MC.world.getRegistryKey().getValue().toString();
+		return parent.resolve(toFileName(serverName))
+			.resolve(toFileName(dimensionName));
+	}
+	
+	private static String toFileName(String name)
+	{
+		return name.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+	
 	public static int getManhattanDistance(ChunkPos a, ChunkPos b)
 	{
 		return Math.abs(a.x - b.x) + Math.abs(a.z - b.z);
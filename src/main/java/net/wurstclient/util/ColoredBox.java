@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util;
+
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * One instance of the unit cube drawn by
+ * {@link RenderUtils#drawSolidBoxes} and
+ * {@link RenderUtils#drawOutlinedBoxes}. The box gives its offset and
+ * scale, the color channels are clamped to 0-1.
+ */
+public record ColoredBox(Box box, float red, float green, float blue,
+	float alpha)
+{
+	public ColoredBox
+	{
+		red = MathHelper.clamp(red, 0, 1);
+		green = MathHelper.clamp(green, 0, 1);
+		blue = MathHelper.clamp(blue, 0, 1);
+		alpha = MathHelper.clamp(alpha, 0, 1);
+	}
+	
+	public ColoredBox(Box box, float[] rgb, float alpha)
+	{
+		this(box, rgb[0], rgb[1], rgb[2], alpha);
+	}
+}
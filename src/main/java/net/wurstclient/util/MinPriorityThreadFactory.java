@@ -8,8 +8,10 @@
 package net.wurstclient.util;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class MinPriorityThreadFactory implements ThreadFactory
@@ -37,10 +39,31 @@ public class MinPriorityThreadFactory implements ThreadFactory
 		return t;
 	}
 	
+	/**
+	 * One thread per processor. Like {@link #newSingleThreadExecutor()},
+	 * the threads stop when there is nothing to do.
+	 */
 	public static ExecutorService newFixedThreadPool()
 	{
-		return Executors.newFixedThreadPool(
-			Runtime.getRuntime().availableProcessors(),
+		int threads = Runtime.getRuntime().availableProcessors();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+			10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
 			new MinPriorityThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	/**
+	 * Runs tasks one at a time, in order. The thread stops when there is
+	 * nothing to do, so the executor can be kept for as long as the game
+	 * runs without keeping it from closing.
+	 */
+	public static ExecutorService newSingleThreadExecutor()
+	{
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+			new MinPriorityThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
 	}
 }
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2014-2023 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.BlockPos;
+import net.wurstclient.hacks.SearchHack;
+import net.wurstclient.mixinterface.IVertexBuffer;
+
+/**
+ * Renders a set of blocks (packed with {@link BlockPos#asLong()}) as one
+ * {@link VertexBuffer} per {@link RegionPos}, with coordinates relative to
+ * that region.
+ * <p>
+ * When the blocks change, only the regions that are actually affected are
+ * compiled and uploaded again. Moving the camera into another region doesn't
+ * require any rebuilding, since each buffer is drawn with its own offset.
+ * <p>
+ * Whichever thread calls {@link #compile(LongSet)} packs each region into
+ * its own direct buffer, already in the {@link VertexFormats#POSITION}
+ * layout. The render thread only hands these buffers to OpenGL, spread
+ * over as many frames as needed to stay within {@link #UPLOAD_BUDGET}, and
+ * frees each one right after. Buffers of updates that are never uploaded
+ * are freed by the next {@link #upload(Update)} or {@link #clear()}.
+ * <p>
+ * Used by {@link SearchHack Search} and similar hacks.
+ */
+public final class RegionVertexBuffers
+{
+	// nanoseconds per frame
+	private static final long UPLOAD_BUDGET = 2_000_000;
+	
+	// the blocks of each region, plus the blocks right outside of it that
+	// can hide its faces, as of the last update
+	private volatile HashMap<RegionPos, LongOpenHashSet> blocks =
+		new HashMap<>();
+	private final HashMap<RegionPos, VertexBuffer> buffers = new HashMap<>();
+	private Update pendingUpdate;
+	
+	// updates that were compiled but not uploaded yet, e.g. because their
+	// task was cancelled
+	private final ArrayList<Update> compiled = new ArrayList<>();
+	private int generation;
+	
+	/**
+	 * Compiles and packs the vertices of all regions whose blocks differ
+	 * from the last update. Can be called on any thread.
+	 */
+	public Update compile(LongSet newBlocks)
+	{
+		int generation;
+		synchronized(compiled)
+		{
+			generation = this.generation;
+		}
+		
+		HashMap<RegionPos, LongOpenHashSet> oldRegions = blocks;
+		HashMap<RegionPos, LongOpenHashSet> newRegions =
+			splitByRegion(newBlocks);
+		
+		Update update = new Update(newRegions);
+		newRegions.forEach((region, regionBlocks) -> {
+			if(!regionBlocks.equals(oldRegions.get(region)))
+				update.vertices.put(region,
+					pack(BlockVertexCompiler.compile(regionBlocks, region)));
+		});
+		
+		for(RegionPos region : oldRegions.keySet())
+			if(!newRegions.containsKey(region))
+				update.vertices.put(region, null);
+			
+		synchronized(compiled)
+		{
+			// cleared while compiling, so nobody will upload this
+			if(generation != this.generation)
+				update.free();
+			else
+				compiled.add(update);
+		}
+		
+		return update;
+	}
+	
+	/**
+	 * @return the given vertices (x, y, z for each) in a new direct buffer,
+	 *         or null if there are none
+	 */
+	private static ByteBuffer pack(int[] vertices)
+	{
+		if(vertices.length == 0)
+			return null;
+		
+		int vertexCount = vertices.length / 3;
+		ByteBuffer buffer = MemoryUtil.memAlloc(
+			vertexCount * VertexFormats.POSITION.getVertexSizeByte());
+		for(int vertex : vertices)
+			buffer.putFloat(vertex);
+		
+		return buffer.flip();
+	}
+	
+	private static HashMap<RegionPos, LongOpenHashSet> splitByRegion(
+		LongSet blocks)
+	{
+		HashMap<RegionPos, LongOpenHashSet> regions = new HashMap<>();
+		for(LongIterator itr = blocks.iterator(); itr.hasNext();)
+		{
+			long pos = itr.nextLong();
+			int x = BlockPos.unpackLongX(pos);
+			int z = BlockPos.unpackLongZ(pos);
+			int regionX = x >> 9 << 9;
+			int regionZ = z >> 9 << 9;
+			add(regions, regionX, regionZ, pos);
+			
+			// blocks at the edge also hide faces in the neighboring region
+			if((x & 511) == 0)
+				add(regions, regionX - 512, regionZ, pos);
+			else if((x & 511) == 511)
+				add(regions, regionX + 512, regionZ, pos);
+			
+			if((z & 511) == 0)
+				add(regions, regionX, regionZ - 512, pos);
+			else if((z & 511) == 511)
+				add(regions, regionX, regionZ + 512, pos);
+		}
+		
+		return regions;
+	}
+	
+	private static void add(HashMap<RegionPos, LongOpenHashSet> regions,
+		int regionX, int regionZ, long pos)
+	{
+		regions.computeIfAbsent(new RegionPos(regionX, regionZ),
+			r -> new LongOpenHashSet()).add(pos);
+	}
+	
+	/**
+	 * Queues the regions that were compiled by {@link #compile(LongSet)} to
+	 * be uploaded by {@link #draw(MatrixStack)}, and frees any other
+	 * compiled updates, which are outdated now. Must be called on the render
+	 * thread.
+	 */
+	public void upload(Update update)
+	{
+		if(pendingUpdate != null)
+			throw new IllegalStateException("Still uploading");
+		
+		synchronized(compiled)
+		{
+			for(Update other : compiled)
+				if(other != update)
+					other.free();
+				
+			compiled.clear();
+		}
+		
+		blocks = update.blocks;
+		pendingUpdate = update;
+	}
+	
+	/**
+	 * @return true while there is compiled data left to upload
+	 */
+	public boolean isUploading()
+	{
+		return pendingUpdate != null;
+	}
+	
+	private void uploadPending()
+	{
+		Update update = pendingUpdate;
+		if(update == null)
+			return;
+		
+		// always upload at least one region, so that it can't get stuck
+		long deadline = System.nanoTime() + UPLOAD_BUDGET;
+		Iterator<Map.Entry<RegionPos, ByteBuffer>> itr =
+			update.vertices.entrySet().iterator();
+		do
+		{
+			if(!itr.hasNext())
+				break;
+			
+			Map.Entry<RegionPos, ByteBuffer> entry = itr.next();
+			itr.remove();
+			
+			VertexBuffer oldBuffer = buffers.remove(entry.getKey());
+			if(oldBuffer != null)
+				oldBuffer.close();
+			
+			ByteBuffer vertices = entry.getValue();
+			if(vertices == null)
+				continue;
+			
+			VertexBuffer vertexBuffer =
+				new VertexBuffer(VertexBuffer.Usage.STATIC);
+			vertexBuffer.bind();
+			((IVertexBuffer)vertexBuffer).uploadPacked(vertices,
+				VertexFormats.POSITION, VertexFormat.DrawMode.QUADS);
+			VertexBuffer.unbind();
+			MemoryUtil.memFree(vertices);
+			buffers.put(entry.getKey(), vertexBuffer);
+			
+		}while(System.nanoTime() < deadline);
+		
+		if(update.vertices.isEmpty())
+			pendingUpdate = null;
+	}
+	
+	/**
+	 * Uploads pending regions within the time budget, then draws all
+	 * regions with the current shader and shader color.
+	 */
+	public void draw(MatrixStack matrixStack)
+	{
+		uploadPending();
+		
+		Matrix4f projMatrix = RenderSystem.getProjectionMatrix();
+		ShaderProgram shader = RenderSystem.getShader();
+		
+		buffers.forEach((region, vertexBuffer) -> {
+			matrixStack.push();
+			RenderUtils.applyRegionalRenderOffset(matrixStack, region);
+			
+			Matrix4f viewMatrix = matrixStack.peek().getPositionMatrix();
+			vertexBuffer.bind();
+			vertexBuffer.draw(viewMatrix, projMatrix, shader);
+			VertexBuffer.unbind();
+			
+			matrixStack.pop();
+		});
+	}
+	
+	/**
+	 * Closes all buffers, frees all compiled data (including that of
+	 * compiles that are still running) and forgets all blocks.
+	 */
+	public void clear()
+	{
+		buffers.values().forEach(VertexBuffer::close);
+		buffers.clear();
+		
+		if(pendingUpdate != null)
+			pendingUpdate.free();
+		pendingUpdate = null;
+		
+		synchronized(compiled)
+		{
+			compiled.forEach(Update::free);
+			compiled.clear();
+			generation++;
+		}
+		
+		blocks = new HashMap<>();
+	}
+	
+	/**
+	 * The result of {@link RegionVertexBuffers#compile(LongSet)}, waiting to
+	 * be uploaded.
+	 */
+	public static final class Update
+	{
+		private final HashMap<RegionPos, LongOpenHashSet> blocks;
+		
+		// null for regions that no longer have any vertices
+		private final LinkedHashMap<RegionPos, ByteBuffer> vertices =
+			new LinkedHashMap<>();
+		
+		private Update(HashMap<RegionPos, LongOpenHashSet> blocks)
+		{
+			this.blocks = blocks;
+		}
+		
+		private void free()
+		{
+			for(ByteBuffer buffer : vertices.values())
+				if(buffer != null)
+					MemoryUtil.memFree(buffer);
+				
+			vertices.clear();
+		}
+	}
+}
@@ -7,6 +7,8 @@
  */
 package net.wurstclient.util;
 
+import java.util.List;
+
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.lwjgl.opengl.GL11;
@@ -40,6 +42,20 @@ public enum RenderUtils
 	
 	private static final Box DEFAULT_BOX = new Box(0, 0, 0, 1, 1, 1);
 	
+	/**
+	 * Corners of the unit cube used by {@link #drawSolidBoxes(List,
+	 * MatrixStack)}, as bit masks: 1 = max X, 2 = max Y, 4 = max Z.
+	 */
+	private static final byte[] UNIT_CUBE_QUADS = {0, 1, 5, 4, 2, 6, 7, 3,
+		0, 2, 3, 1, 1, 3, 7, 5, 4, 5, 7, 6, 0, 4, 6, 2};
+	
+	/**
+	 * Corners of the unit cube used by {@link #drawOutlinedBoxes(List,
+	 * MatrixStack)}, in the same format as {@link #UNIT_CUBE_QUADS}.
+	 */
+	private static final byte[] UNIT_CUBE_LINES = {0, 1, 1, 5, 5, 4, 4, 0,
+		0, 2, 1, 3, 5, 7, 4, 6, 2, 3, 3, 7, 7, 6, 6, 2};
+	
 	public static void scissorBox(int startX, int startY, int endX, int endY)
 	{
 		int width = endX - startX;
@@ -420,6 +436,64 @@ public enum RenderUtils
 		bufferBuilder.vertex(bb.minX, bb.maxY, bb.minZ).next();
 	}
 	
+	/**
+	 * Draws all of the given boxes as solid boxes, each in its own color,
+	 * using a single draw call. Replaces the old pattern of setting the
+	 * shader color and drawing a {@link VertexBuffer} once per box.
+	 */
+	public static void drawSolidBoxes(List<ColoredBox> boxes,
+		MatrixStack matrixStack)
+	{
+		drawBoxes(boxes, matrixStack, VertexFormat.DrawMode.QUADS,
+			UNIT_CUBE_QUADS);
+	}
+	
+	/**
+	 * Draws all of the given boxes as outlines, each in its own color,
+	 * using a single draw call.
+	 */
+	public static void drawOutlinedBoxes(List<ColoredBox> boxes,
+		MatrixStack matrixStack)
+	{
+		drawBoxes(boxes, matrixStack, VertexFormat.DrawMode.DEBUG_LINES,
+			UNIT_CUBE_LINES);
+	}
+	
+	private static void drawBoxes(List<ColoredBox> boxes,
+		MatrixStack matrixStack, VertexFormat.DrawMode drawMode,
+		byte[] corners)
+	{
+		if(boxes.isEmpty())
+			return;
+		
+		Matrix4f matrix = matrixStack.peek().getPositionMatrix();
+		Tessellator tessellator = RenderSystem.renderThreadTesselator();
+		BufferBuilder bufferBuilder = tessellator.getBuffer();
+		RenderSystem.setShader(GameRenderer::getPositionColorProgram);
+		RenderSystem.setShaderColor(1, 1, 1, 1);
+		
+		bufferBuilder.begin(drawMode, VertexFormats.POSITION_COLOR);
+		for(ColoredBox box : boxes)
+		{
+			Box bb = box.box();
+			float x = (float)bb.minX;
+			float y = (float)bb.minY;
+			float z = (float)bb.minZ;
+			float sizeX = (float)bb.getXLength();
+			float sizeY = (float)bb.getYLength();
+			float sizeZ = (float)bb.getZLength();
+			
+			for(byte corner : corners)
+				bufferBuilder
+					.vertex(matrix, (corner & 1) == 0 ? x : x + sizeX,
+						(corner & 2) == 0 ? y : y + sizeY,
+						(corner & 4) == 0 ? z : z + sizeZ)
+					.color(box.red(), box.green(), box.blue(), box.alpha())
+					.next();
+		}
+		tessellator.draw();
+	}
+	
 	public static void drawCrossBox(Box bb, MatrixStack matrixStack)
 	{
 		Matrix4f matrix = matrixStack.peek().getPositionMatrix();